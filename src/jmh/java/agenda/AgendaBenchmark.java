@@ -0,0 +1,77 @@
+package agenda;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description : Measures the queries of {@link Agenda} over agendas of
+ * various sizes and mixes of repetitions
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AgendaBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    int size;
+
+    @Param({ "SIMPLE", "MIXED", "RECURRING" })
+    Workloads.Mix mix;
+
+    @Param({ "0", "10" })
+    int exceptionsPerEvent;
+
+    @Param({ "0.5" })
+    double terminationDensity;
+
+    Agenda agenda;
+
+    /**
+     * The queried days, titles and candidates, drawn in advance
+     */
+    LocalDate[] days;
+    String[] titles;
+    Event[] candidates;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Workloads.Fixture fixture = Workloads.fixture(size, mix, exceptionsPerEvent, terminationDensity);
+        agenda = fixture.agenda();
+        days = fixture.days();
+        titles = fixture.titles();
+        candidates = fixture.candidates();
+    }
+
+    private int next() {
+        return next = (next + 1) & 1023;
+    }
+
+    @Benchmark
+    public List<Event> eventsInDay() {
+        return agenda.eventsInDay(days[next()]);
+    }
+
+    @Benchmark
+    public long eventsInWeek() {
+        LocalDate day = days[next()];
+        return agenda.eventsBetween(day, day.plusDays(6)).count();
+    }
+
+    @Benchmark
+    public boolean isFreeFor() {
+        return agenda.isFreeFor(candidates[next()]);
+    }
+
+    @Benchmark
+    public List<Event> findByTitle() {
+        return agenda.findByTitle(titles[next()]);
+    }
+}
@@ -0,0 +1,55 @@
+package agenda;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description : Measures the loading of an {@link Agenda}, one event at a
+ * time or in bulk
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AgendaLoadBenchmark {
+
+    @Param({ "100000", "1000000" })
+    int size;
+
+    @Param({ "SIMPLE", "MIXED" })
+    Workloads.Mix mix;
+
+    List<Event> events;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        events = Workloads.events(size, mix, 0, 0.5, 42);
+    }
+
+    @Benchmark
+    public Agenda addEvent() {
+        Agenda agenda = new Agenda(false);
+        for (Event e : events)
+            agenda.addEvent(e);
+        return agenda;
+    }
+
+    @Benchmark
+    public Agenda addAll() {
+        Agenda agenda = new Agenda(false);
+        agenda.addAll(events);
+        return agenda;
+    }
+
+    @Benchmark
+    public Agenda addAllSequential() {
+        Agenda agenda = new Agenda(false);
+        agenda.setParallelThreshold(Integer.MAX_VALUE);
+        agenda.addAll(events);
+        return agenda;
+    }
+}
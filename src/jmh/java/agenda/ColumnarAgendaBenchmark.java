@@ -0,0 +1,52 @@
+package agenda;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description : Measures the day query of {@link ColumnarAgenda}, without
+ * building the matching events
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ColumnarAgendaBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    int size;
+
+    @Param({ "SIMPLE", "MIXED", "RECURRING" })
+    Workloads.Mix mix;
+
+    @Param({ "0", "10" })
+    int exceptionsPerEvent;
+
+    ColumnarAgenda agenda;
+
+    LocalDate[] days;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        agenda = new ColumnarAgenda(size);
+        agenda.addAll(Workloads.events(size, mix, exceptionsPerEvent, 0.5, 42));
+        SplittableRandom random = new SplittableRandom(7);
+        days = new LocalDate[1024];
+        for (int i = 0; i < days.length; i++)
+            days[i] = Workloads.ORIGIN.plusDays(random.nextInt(Workloads.SPAN_DAYS));
+    }
+
+    @Benchmark
+    public int countInDay() {
+        int[] count = new int[1];
+        agenda.forEachInDay(days[next = (next + 1) & 1023], i -> count[0]++);
+        return count[0];
+    }
+}
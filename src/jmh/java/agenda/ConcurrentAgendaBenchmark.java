@@ -0,0 +1,86 @@
+package agenda;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description : Measures the writes of a {@link ConcurrentAgenda}, which
+ * rebuild its snapshot, one change at a time or in a batch
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ConcurrentAgendaBenchmark {
+
+    @Param({ "10000", "500000" })
+    int size;
+
+    @Param({ "MIXED" })
+    Workloads.Mix mix;
+
+    @Param({ "100" })
+    int batchSize;
+
+    ConcurrentAgenda agenda;
+
+    /**
+     * The events added by a benchmark, removed after each call
+     */
+    List<Event> added;
+
+    /**
+     * The repeating event given an exception by each call, as found in the
+     * current snapshot
+     */
+    Event repeating;
+
+    LocalDate exception;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        agenda = new ConcurrentAgenda();
+        List<Event> events = Workloads.events(size, mix, 0, 0.5, 42);
+        agenda.update(batch -> events.forEach(batch::addEvent));
+        repeating = new Event("Repeating", Workloads.ORIGIN.atTime(8, 0), Duration.ofMinutes(30));
+        repeating.setRepetition(ChronoUnit.DAYS);
+        agenda.addEvent(repeating);
+        exception = Workloads.ORIGIN;
+        added = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++)
+            added.add(new Event(Workloads.title(size + i), Workloads.ORIGIN.plusDays(i).atTime(9, 0),
+                    Duration.ofMinutes(45)));
+    }
+
+    @TearDown(Level.Invocation)
+    public void removeAdded() {
+        // Chaque appel repart d'un agenda de la même taille
+        List<Event> events = agenda.snapshot().getEvents();
+        if (events.size() > size + 1)
+            agenda.update(batch -> events.subList(size + 1, events.size()).forEach(batch::removeEvent));
+    }
+
+    @Benchmark
+    public void addEvent() {
+        agenda.addEvent(added.get(0));
+    }
+
+    @Benchmark
+    public Event addException() {
+        exception = exception.plusDays(1);
+        return repeating = agenda.addException(repeating, exception);
+    }
+
+    @Benchmark
+    public void addBatch() {
+        agenda.update(batch -> added.forEach(batch::addEvent));
+    }
+}
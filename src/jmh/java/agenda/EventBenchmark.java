@@ -0,0 +1,51 @@
+package agenda;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description : Measures {@link Event#isInDay(LocalDate)} for each kind of
+ * repetition
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventBenchmark {
+
+    @Param({ "NONE", "DAYS", "WEEKS", "MONTHS" })
+    String frequency;
+
+    @Param({ "0", "100" })
+    int exceptionsPerEvent;
+
+    @Param({ "0", "1" })
+    double terminationDensity;
+
+    Event event;
+
+    LocalDate[] days;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        ChronoUnit unit = "NONE".equals(frequency) ? null : ChronoUnit.valueOf(frequency);
+        event = Workloads.event(random, 0, unit, exceptionsPerEvent, terminationDensity);
+        days = new LocalDate[1024];
+        for (int i = 0; i < days.length; i++)
+            days[i] = Workloads.ORIGIN.plusDays(random.nextInt(2 * Workloads.SPAN_DAYS));
+    }
+
+    @Benchmark
+    public boolean isInDay() {
+        return event.isInDay(days[next = (next + 1) & 1023]);
+    }
+}
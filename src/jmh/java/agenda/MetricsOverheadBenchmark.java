@@ -0,0 +1,91 @@
+package agenda;
+
+import jdk.jfr.Recording;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description : Measures the cost of the {@link AgendaMetrics} of an agenda on
+ * its queries : none, JFR events with no recording, and JFR events recorded
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MetricsOverheadBenchmark {
+
+    public enum Metrics {
+        NOOP, JFR, JFR_RECORDING
+    }
+
+    @Param({ "100000" })
+    int size;
+
+    @Param({ "MIXED" })
+    Workloads.Mix mix;
+
+    @Param({ "NOOP", "JFR", "JFR_RECORDING" })
+    Metrics metrics;
+
+    Agenda agenda;
+    Recording recording;
+
+    /**
+     * The queried days, titles and candidates, drawn in advance
+     */
+    LocalDate[] days;
+    String[] titles;
+    Event[] candidates;
+
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Workloads.Fixture fixture = Workloads.fixture(size, mix, 0, 0.5);
+        agenda = fixture.agenda();
+        days = fixture.days();
+        titles = fixture.titles();
+        candidates = fixture.candidates();
+        if (metrics != Metrics.NOOP)
+            agenda.setMetrics(new JfrAgendaMetrics());
+        if (metrics == Metrics.JFR_RECORDING) {
+            recording = new Recording();
+            recording.enable("agenda.EventsInDay");
+            recording.enable("agenda.FindByTitle");
+            recording.enable("agenda.IsFreeFor");
+            recording.setToDisk(false);
+            recording.setMaxSize(16 << 20);
+            recording.start();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (recording != null)
+            recording.close();
+    }
+
+    private int next() {
+        return next = (next + 1) & 1023;
+    }
+
+    @Benchmark
+    public List<Event> eventsInDay() {
+        return agenda.eventsInDay(days[next()]);
+    }
+
+    @Benchmark
+    public boolean isFreeFor() {
+        return agenda.isFreeFor(candidates[next()]);
+    }
+
+    @Benchmark
+    public List<Event> findByTitle() {
+        return agenda.findByTitle(titles[next()]);
+    }
+}
@@ -0,0 +1,147 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Description : Generates reproducible sets of events for the benchmarks
+ */
+public final class Workloads {
+
+    /**
+     * The first day of the generated events
+     */
+    static final LocalDate ORIGIN = LocalDate.of(2020, 1, 1);
+
+    /**
+     * The number of days over which the generated events start
+     */
+    static final int SPAN_DAYS = 3 * 365;
+
+    /**
+     * The proportions (in percent) of simple, daily, weekly and monthly events
+     */
+    public enum Mix {
+        SIMPLE(100, 0, 0, 0),
+        MIXED(70, 10, 15, 5),
+        RECURRING(0, 20, 60, 20);
+
+        final int simple;
+        final int daily;
+        final int weekly;
+        final int monthly;
+
+        Mix(int simple, int daily, int weekly, int monthly) {
+            this.simple = simple;
+            this.daily = daily;
+            this.weekly = weekly;
+            this.monthly = monthly;
+        }
+
+        ChronoUnit draw(SplittableRandom random) {
+            int p = random.nextInt(simple + daily + weekly + monthly);
+            if (p < simple)
+                return null;
+            if (p < simple + daily)
+                return ChronoUnit.DAYS;
+            if (p < simple + daily + weekly)
+                return ChronoUnit.WEEKS;
+            return ChronoUnit.MONTHS;
+        }
+    }
+
+    /**
+     * An agenda of generated events, and the queries drawn in advance to probe
+     * it : 1024 days, titles and candidate events
+     */
+    record Fixture(Agenda agenda, LocalDate[] days, String[] titles, Event[] candidates) {
+    }
+
+    private Workloads() {
+    }
+
+    /**
+     * Generates an agenda and the queries to probe it
+     *
+     * @param size               the number of events
+     * @param mix                the proportions of repetitions
+     * @param exceptionsPerEvent the number of exceptions of each repeating event
+     * @param terminationDensity the share of repeating events that terminate
+     * @return the agenda, holding the events of seed 42, and the queries of
+     * seed 7
+     */
+    static Fixture fixture(int size, Mix mix, int exceptionsPerEvent, double terminationDensity) {
+        Agenda agenda = new Agenda();
+        for (Event e : events(size, mix, exceptionsPerEvent, terminationDensity, 42))
+            agenda.addEvent(e);
+        SplittableRandom random = new SplittableRandom(7);
+        LocalDate[] days = new LocalDate[1024];
+        String[] titles = new String[1024];
+        Event[] candidates = new Event[1024];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = ORIGIN.plusDays(random.nextInt(SPAN_DAYS));
+            titles[i] = title(random.nextInt(size));
+            LocalDateTime start = days[i].atTime(random.nextInt(24), 15 * random.nextInt(4));
+            candidates[i] = new Event("Candidate", start, Duration.ofMinutes(30));
+        }
+        return new Fixture(agenda, days, titles, candidates);
+    }
+
+    /**
+     * Generates events
+     *
+     * @param size               the number of events
+     * @param mix                the proportions of repetitions
+     * @param exceptionsPerEvent the number of exceptions of each repeating event
+     * @param terminationDensity the share of repeating events that terminate
+     * @param seed               the seed of the generator
+     * @return the generated events
+     */
+    static List<Event> events(int size, Mix mix, int exceptionsPerEvent, double terminationDensity, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Event> res = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            res.add(event(random, i, mix.draw(random), exceptionsPerEvent, terminationDensity));
+        return res;
+    }
+
+    /**
+     * Generates one event
+     *
+     * @param random             the generator
+     * @param i                  the number of the event, used in its title
+     * @param frequency          its repetition, or null for a simple event
+     * @param exceptionsPerEvent the number of exceptions if it repeats
+     * @param terminationDensity the probability that it terminates if it repeats
+     * @return the generated event
+     */
+    static Event event(SplittableRandom random, int i, ChronoUnit frequency, int exceptionsPerEvent,
+            double terminationDensity) {
+        LocalDateTime start = ORIGIN.atStartOfDay()
+                .plusMinutes(15L * random.nextInt(SPAN_DAYS * 24 * 4));
+        Duration duration = Duration.ofMinutes(15L * (1 + random.nextInt(12)));
+        Event e = new Event(title(i), start, duration);
+        if (frequency != null) {
+            e.setRepetition(frequency);
+            LocalDate first = start.toLocalDate();
+            for (int x = 1; x <= exceptionsPerEvent; x++)
+                e.addException(first.plus(random.nextInt(1, 5 * exceptionsPerEvent), frequency));
+            if (random.nextDouble() < terminationDensity)
+                e.setTermination(1 + random.nextInt(50));
+        }
+        return e;
+    }
+
+    /**
+     * @param i the number of an event
+     * @return the title of that event, shared by about ten events
+     */
+    static String title(int i) {
+        return "Meeting " + (i / 10);
+    }
+}
@@ -1,66 +1,712 @@
 package agenda;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Description : An agenda that stores events
  */
-public class Agenda {
+public class Agenda implements EventStore {
+
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    /**
+     * The default number of repeating events above which a query evaluates
+     * them in parallel
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 10_000;
 
     /**
-     * Adds an event to this agenda
+     * The counters of the day cache of an agenda, since it was enabled
      *
-     * @param e the event to add
+     * @param hits          the queries answered by the cache
+     * @param misses        the queries computed from the indexes
+     * @param invalidations the days dropped because a change may affect them
+     * @param size          the number of days in the cache
+     */
+    public record DayCacheStats(long hits, long misses, long invalidations, int size) {
+    }
+
+    /**
+     * The events in the order they were added. A removed event leaves a null
+     * slot, until the list is compacted : when it is read, or when half of
+     * its slots are empty.
      */
     private final List<Event> events = new ArrayList<>();
 
+    /**
+     * The slot of each event in the list
+     */
+    private final Map<Event, Integer> positions = new IdentityHashMap<>();
+
+    private int removedCount;
+
+    // Vue des événements, compactée à chaque accès qui suit un retrait
+    private final List<Event> eventsView = new AbstractList<>() {
+        @Override
+        public Event get(int index) {
+            compact();
+            return events.get(index);
+        }
+
+        @Override
+        public int size() {
+            compact();
+            return events.size();
+        }
+    };
+
+    /**
+     * Index of the non-repeating events, over the span [start, start + duration]
+     */
+    private final IntervalTree spans = new IntervalTree();
+
+    /**
+     * Index of the repeating events, by frequency and phase
+     */
+    private final RecurrenceIndex recurrences = new RecurrenceIndex();
+
+    /**
+     * Index of all the events, by title
+     */
+    private final TitleIndex titles = new TitleIndex();
+
+    private final ConflictFinder conflicts = new ConflictFinder(spans, recurrences);
+
+    private final List<AgendaListener> listeners = new ArrayList<>();
+
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    // Les derniers jours demandés, null si le cache n'est pas activé
+    private volatile DayCache dayCache;
+
+    private volatile AgendaMetrics metrics = AgendaMetrics.NOOP;
+
+    /**
+     * True if this agenda follows the changes made directly to its events
+     */
+    private final boolean observeEvents;
+
+    // Vrai une fois l'agenda publié comme instantané : il ne change plus
+    private boolean readOnly;
+
+    /**
+     * Constructs an empty agenda
+     */
+    public Agenda() {
+        this(true);
+    }
+
+    /**
+     * Constructs an empty agenda
+     *
+     * @param observeEvents true to follow the changes made directly to the
+     *                      events, false if they are never changed once added
+     */
+    Agenda(boolean observeEvents) {
+        this.observeEvents = observeEvents;
+    }
+
+    /**
+     * Adds an event to this agenda. Later changes to the event, through its
+     * own methods, are followed by the agenda.
+     *
+     * @param e the event to add
+     * @throws IllegalArgumentException if the event is already in this agenda
+     */
     public void addEvent(Event e) {
-        // TODO : implémenter cette méthode
+        checkWritable();
+        if (positions.containsKey(e))
+            throw new IllegalArgumentException("Event already in this agenda : " + e);
+        AgendaMetrics m = metrics;
+        boolean measured = m.isEnabled();
+        long start = measured ? System.nanoTime() : 0;
+        positions.put(e, events.size());
         events.add(e);
+        titles.add(e);
+        index(e);
+        invalidateDays(e);
+        if (observeEvents)
+            e.observe(this);
+        for (AgendaListener l : listeners)
+            l.eventAdded(e);
+        if (measured)
+            m.eventAdded(System.nanoTime() - start, positions.size(), spans.size(), recurrences.size());
     }
 
     /**
-     * Computes the events that occur on a given day
+     * Adds several events to this agenda, in the order of the collection, as
+     * {@link #addEvent(Event)} would one by one. The indexes are built once
+     * for the whole batch : the non-repeating events are sorted and merged
+     * into the interval tree in a single pass. A batch of at least
+     * {@link #getParallelThreshold()} events is sorted and indexed in
+     * parallel. Listeners are notified once every event is indexed. The
+     * batch is measured as a whole.
+     *
+     * @param added the events to add
+     * @throws IllegalArgumentException if an event is already in this agenda,
+     *                                  or twice in the batch. No event is
+     *                                  added then.
+     */
+    public void addAll(Collection<Event> added) {
+        checkWritable();
+        AgendaMetrics m = metrics;
+        boolean measured = m.isEnabled();
+        long start = measured ? System.nanoTime() : 0;
+        List<Event> batch = new ArrayList<>(added);
+        int position = events.size();
+        for (int i = 0; i < batch.size(); i++) {
+            Event e = batch.get(i);
+            if (positions.putIfAbsent(e, position++) != null) {
+                // Le lot est refusé en entier : les places déjà prises sont rendues
+                for (int j = 0; j < i; j++)
+                    positions.remove(batch.get(j));
+                throw new IllegalArgumentException("Event already in this agenda : " + e);
+            }
+        }
+        events.addAll(batch);
+        List<Event> simple = new ArrayList<>(batch.size());
+        for (Event e : batch) {
+            if (e.hasRepetition())
+                recurrences.add(e);
+            else
+                simple.add(e);
+        }
+        if (batch.size() >= parallelThreshold) {
+            // Les deux index sont indépendants : construits en même temps
+            ForkJoinTask<?> byTitle = ForkJoinPool.commonPool().submit(() -> titles.addAll(batch));
+            spans.insertAll(simple, Event::startEpochSecond, Event::endEpochSecond, true);
+            byTitle.join();
+        } else {
+            titles.addAll(batch);
+            spans.insertAll(simple, Event::startEpochSecond, Event::endEpochSecond, false);
+        }
+        DayCache cache = dayCache;
+        if (cache != null && !cache.isEmpty()) {
+            // Un lot plus grand que le cache le touche sans doute partout : il est vidé
+            if (batch.size() > cache.capacity())
+                cache.invalidateAll();
+            else
+                cache.invalidateIf(day -> {
+                    for (Event e : batch)
+                        if (e.isInDay(day))
+                            return true;
+                    return false;
+                });
+        }
+        if (observeEvents)
+            for (Event e : batch)
+                e.observe(this);
+        for (AgendaListener l : listeners)
+            for (Event e : batch)
+                l.eventAdded(e);
+        if (measured)
+            m.eventsAdded(System.nanoTime() - start, batch.size(), positions.size(), spans.size(), recurrences.size());
+    }
+
+    private void index(Event e) {
+        if (e.hasRepetition())
+            recurrences.add(e);
+        else
+            spans.insert(e.startEpochSecond(), e.endEpochSecond(), e);
+    }
+
+    // Retire un événement des index où il a été rangé avec ce début
+    private void unindex(Event e, LocalDateTime start) {
+        if (e.hasRepetition())
+            recurrences.remove(e, e.getFrequency(), start.toLocalDate());
+        else
+            spans.remove(e);
+    }
+
+    /**
+     * Removes an event from this agenda, in O(log N)
+     *
+     * @param e the event to remove
+     * @return true if the event was in this agenda
+     */
+    public boolean removeEvent(Event e) {
+        checkWritable();
+        Integer position = positions.remove(e);
+        if (position == null)
+            return false;
+        events.set(position, null);
+        // Compactée dès que la moitié des places est vide : O(1) amorti par retrait
+        if (++removedCount > events.size() / 2)
+            compact();
+        titles.remove(e);
+        unindex(e, e.getStart());
+        invalidateDays(e);
+        if (observeEvents)
+            e.unobserve(this);
+        for (AgendaListener l : listeners)
+            l.eventRemoved(e);
+        return true;
+    }
+
+    /**
+     * Changes the title, start and duration of an event of this agenda, in
+     * O(log N). The event keeps its place in the agenda. If it repeats, it
+     * keeps its frequency, its exceptions and its termination, counted from
+     * the new start.
+     *
+     * @param e        the event to change
+     * @param title    the new title
+     * @param start    the new start time
+     * @param duration the new duration
+     * @throws IllegalArgumentException if the event is not in this agenda
+     */
+    public void updateEvent(Event e, String title, LocalDateTime start, Duration duration) {
+        checkWritable();
+        if (!positions.containsKey(e))
+            throw new IllegalArgumentException("Event not in this agenda : " + e);
+        String previousTitle = e.getTitle();
+        LocalDateTime previousStart = e.getStart();
+        // Un agenda qui suit ses événements est notifié par l'événement lui-même
+        e.reschedule(title, start, duration);
+        if (!observeEvents)
+            onEventUpdated(e, previousTitle, previousStart);
+    }
+
+    /**
+     * Removes all the events of this agenda
+     */
+    public void clear() {
+        checkWritable();
+        if (observeEvents)
+            for (Event e : events)
+                if (e != null)
+                    e.unobserve(this);
+        events.clear();
+        positions.clear();
+        removedCount = 0;
+        spans.clear();
+        recurrences.clear();
+        titles.clear();
+        DayCache cache = dayCache;
+        if (cache != null)
+            cache.invalidateAll();
+        for (AgendaListener l : listeners)
+            l.cleared();
+    }
+
+    // Referme les places laissées par les événements retirés
+    private void compact() {
+        if (removedCount == 0)
+            return;
+        int next = 0;
+        for (Event e : events) {
+            if (e != null) {
+                events.set(next, e);
+                positions.put(e, next++);
+            }
+        }
+        events.subList(next, events.size()).clear();
+        removedCount = 0;
+    }
+
+    /**
+     * Makes this agenda read-only : its events, its listeners and its parallel
+     * threshold can no longer be changed. It must be called before the agenda
+     * is shared between threads.
+     *
+     * @return this agenda
+     */
+    Agenda freeze() {
+        readOnly = true;
+        return this;
+    }
+
+    private void checkWritable() {
+        if (readOnly)
+            throw new UnsupportedOperationException("Read-only agenda");
+    }
+
+    // Le nombre de places de la liste des événements, retirés compris
+    int slotCount() {
+        return events.size();
+    }
+
+    // Oublie les jours où l'événement a lieu
+    private void invalidateDays(Event e) {
+        DayCache cache = dayCache;
+        if (cache != null)
+            cache.invalidateIf(e::isInDay);
+    }
+
+    /**
+     * Enables a cache of the results of {@link #eventsInDay(LocalDate)} for the
+     * last days queried. A change to the agenda or to one of its events only
+     * drops the days it may affect. With the cache, the lists returned by
+     * {@link #eventsInDay(LocalDate)} can not be modified.
+     *
+     * @param days the number of days kept, or 0 to disable the cache
+     */
+    public void setDayCacheSize(int days) {
+        if (days < 0)
+            throw new IllegalArgumentException("Day cache size must not be negative : " + days);
+        this.dayCache = days == 0 ? null : new DayCache(days);
+    }
+
+    /**
+     * @return the counters of the day cache, or null if it is not enabled
+     */
+    public DayCacheStats getDayCacheStats() {
+        DayCache cache = dayCache;
+        return cache == null ? null : cache.stats();
+    }
+
+    /**
+     * Sets where the measures of the operations of this agenda are sent
+     *
+     * @param metrics the metrics, or {@link AgendaMetrics#NOOP} to stop
+     *                measuring
+     */
+    public void setMetrics(AgendaMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    /**
+     * @return where the measures of the operations of this agenda are sent
+     */
+    public AgendaMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Registers a listener notified of the changes of this agenda and of its
+     * events
+     *
+     * @param l the listener
+     */
+    public void addListener(AgendaListener l) {
+        checkWritable();
+        listeners.add(l);
+    }
+
+    /**
+     * Unregisters a listener
+     *
+     * @param l the listener
+     */
+    public void removeListener(AgendaListener l) {
+        checkWritable();
+        listeners.remove(l);
+    }
+
+    /**
+     * @return the number of repeating events above which a query evaluates
+     * them in parallel
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Sets the number of repeating events above which {@link #eventsInDay}
+     * and {@link #eventsBetween} evaluate them in parallel, on the common
+     * fork-join pool. It is also the size of batch above which
+     * {@link #addAll(Collection)} builds the indexes in parallel. The results
+     * do not depend on it.
+     *
+     * @param threshold the number of events, at least 1. Integer.MAX_VALUE
+     *                  keeps queries on the calling thread.
+     */
+    public void setParallelThreshold(int threshold) {
+        if (threshold < 1)
+            throw new IllegalArgumentException("Parallel threshold must be positive : " + threshold);
+        checkWritable();
+        this.parallelThreshold = threshold;
+    }
+
+    // Notifications des événements de cet agenda, appelées après chaque changement
+
+    void onRepetitionChanged(Event e, ChronoUnit previousFrequency) {
+        if (previousFrequency == null)
+            spans.remove(e);
+        else
+            recurrences.remove(e, previousFrequency);
+        index(e);
+        DayCache cache = dayCache;
+        if (cache != null) {
+            // L'ancienne répétition n'est plus connue : tous les jours depuis le début
+            LocalDate start = e.getStart().toLocalDate();
+            cache.invalidateIf(day -> !day.isBefore(start));
+        }
+        for (AgendaListener l : listeners)
+            l.repetitionChanged(e);
+    }
+
+    void onEventUpdated(Event e, String previousTitle, LocalDateTime previousStart) {
+        titles.remove(e, previousTitle);
+        titles.add(e);
+        unindex(e, previousStart);
+        index(e);
+        DayCache cache = dayCache;
+        if (cache != null)
+            cache.invalidateAll();
+        for (AgendaListener l : listeners)
+            l.eventUpdated(e);
+    }
+
+    void onExceptionAdded(Event e, LocalDate date) {
+        DayCache cache = dayCache;
+        if (cache != null)
+            cache.invalidate(date);
+        for (AgendaListener l : listeners)
+            l.exceptionAdded(e, date);
+    }
+
+    void onExceptionRemoved(Event e, LocalDate date) {
+        DayCache cache = dayCache;
+        if (cache != null)
+            cache.invalidate(date);
+        for (AgendaListener l : listeners)
+            l.exceptionRemoved(e, date);
+    }
+
+    void onTerminationChanged(Event e) {
+        DayCache cache = dayCache;
+        if (cache != null) {
+            // Les jours de la répétition, quelle que soit la terminaison, avant ou après le changement
+            Repetition repetition = e.repetition();
+            cache.invalidateIf(day -> {
+                long index = repetition.occurrenceIndex(day);
+                return index >= 0 && !repetition.isExceptionAt(index);
+            });
+        }
+        for (AgendaListener l : listeners)
+            l.terminationChanged(e);
+    }
+
+    /**
+     * @return the events of this agenda, in the order they were added
+     */
+    public List<Event> getEvents() {
+        return Collections.unmodifiableList(eventsView);
+    }
+
+    /**
+     * Computes the events that occur on a given day. The non-repeating events
+     * are listed first, in ascending order of start, followed by the repeating
+     * ones.
      *
      * @param day the day toi test
      * @return a list of events that occur on that day
+     * @see #setDayCacheSize(int)
      */
     public List<Event> eventsInDay(LocalDate day) {
-        // TODO : implémenter cette méthode
+        AgendaMetrics m = metrics;
+        boolean measured = m.isEnabled();
+        long start = measured ? System.nanoTime() : 0;
+        DayCache cache = dayCache;
+        if (cache != null) {
+            List<Event> cached = cache.get(day);
+            if (cached != null) {
+                if (measured)
+                    m.eventsInDay(System.nanoTime() - start, 0, cached.size(), true);
+                return cached;
+            }
+        }
         List<Event> res = new ArrayList<>();
-        for (Event e : events) {
-            if (e.isInDay(day))
-                res.add(e);
+        long dayStart = day.toEpochDay() * SECONDS_PER_DAY;
+        spans.query(dayStart, dayStart + SECONDS_PER_DAY - 1, res::add);
+        int simple = res.size();
+        List<Event> candidates = recurrences.candidates(day);
+        if (candidates.size() >= parallelThreshold) {
+            // Un flux parallèle ordonné garde l'ordre des candidats
+            res.addAll(candidates.parallelStream().filter(e -> e.isInDay(day)).toList());
+        } else {
+            for (Event e : candidates)
+                if (e.isInDay(day))
+                    res.add(e);
+        }
+        if (cache != null) {
+            res = Collections.unmodifiableList(res);
+            cache.put(day, res);
         }
+        if (measured)
+            m.eventsInDay(System.nanoTime() - start, simple + candidates.size(), res.size(), false);
         return res;
     }
 
-    public List<Event> findByTitle(String title) {
-        List<Event> res = new ArrayList<>();
-        for (Event e : events) {
-            if (e.getTitle().equals(title))
-                res.add(e);
+    /**
+     * Computes lazily the occurrences of the events of this agenda in a range
+     * of days, in ascending order of start. Each event is expanded once for the
+     * whole range, and its occurrences are produced on demand. The
+     * non-repeating events are read from the interval tree as the stream
+     * advances, so the agenda must not be changed while it is consumed.
+     *
+     * @param from the first day of the range (inclusive)
+     * @param to   the last day of the range (inclusive)
+     * @return the occurrences that occur in that range
+     */
+    public Stream<Occurrence> eventsBetween(LocalDate from, LocalDate to) {
+        if (to.isBefore(from))
+            throw new IllegalArgumentException("Range ends before it starts : " + from + " > " + to);
+        OccurrenceMerger merger = new OccurrenceMerger();
+        addOccurrences(merger, from, to);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(merger, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    // Ajoute au fusionneur les occurrences de chaque événement dans une plage de jours
+    private void addOccurrences(OccurrenceMerger merger, LocalDate from, LocalDate to) {
+        long rangeStart = from.toEpochDay() * SECONDS_PER_DAY;
+        long rangeEnd = (to.toEpochDay() + 1) * SECONDS_PER_DAY - 1;
+        // Les événements simples sortent de l'arbre déjà triés : une seule source, lue à la demande
+        merger.addSimple(spans.iterator(rangeStart, rangeEnd), from, to);
+        List<Event> repeating = recurrences.all();
+        if (repeating.size() >= parallelThreshold) {
+            // Les premières occurrences sont cherchées en parallèle, puis fusionnées dans l'ordre
+            List<Iterator<LocalDateTime>> starts = repeating.parallelStream()
+                    .map(e -> e.occurrenceStarts(from, to)).toList();
+            for (int i = 0; i < starts.size(); i++)
+                merger.add(repeating.get(i), starts.get(i));
+        } else
+            repeating.forEach(e -> merger.add(e, e.occurrenceStarts(from, to)));
+    }
+
+    /**
+     * Finds the free slots of this agenda in a window of time : the spans
+     * where no event, repeating or not, takes place. The occurrences are
+     * merged in a single pass, in ascending order of start.
+     *
+     * @param minimum the shortest slot to keep
+     * @param from    the start of the window (inclusive)
+     * @param to      the end of the window (exclusive)
+     * @return the free slots of at least that length, in ascending order
+     */
+    public List<TimeSlot> findFreeSlots(Duration minimum, LocalDateTime from, LocalDateTime to) {
+        return findFreeSlots(List.of(this), minimum, from, to);
+    }
+
+    /**
+     * Finds the slots where several agendas are all free, for instance to
+     * schedule a meeting between their owners. The occurrences of all the
+     * agendas are merged in a single pass, in ascending order of start.
+     *
+     * @param agendas the agendas that must be free
+     * @param minimum the shortest slot to keep
+     * @param from    the start of the window (inclusive)
+     * @param to      the end of the window (exclusive)
+     * @return the common free slots of at least that length, in ascending
+     * order
+     */
+    public static List<TimeSlot> findFreeSlots(Collection<Agenda> agendas, Duration minimum,
+            LocalDateTime from, LocalDateTime to) {
+        if (minimum.isNegative())
+            throw new IllegalArgumentException("Minimum duration must not be negative : " + minimum);
+        if (to.isBefore(from))
+            throw new IllegalArgumentException("Range ends before it starts : " + from + " > " + to);
+        OccurrenceMerger busy = new OccurrenceMerger();
+        for (Agenda agenda : agendas) {
+            // Une occurrence répétitive commencée les jours d'avant peut déborder sur la fenêtre
+            LocalDate first = from.toLocalDate().minusDays(agenda.recurrences.maxSpanDays());
+            agenda.addOccurrences(busy, first, to.toLocalDate());
+        }
+        List<TimeSlot> res = new ArrayList<>();
+        // Tout ce qui précède free est occupé, ou hors de la fenêtre
+        LocalDateTime free = from;
+        while (busy.hasNext()) {
+            Occurrence o = busy.next();
+            if (!o.start().isBefore(to))
+                break;
+            LocalDateTime end = o.end();
+            if (!end.isAfter(o.start()) || !end.isAfter(free))
+                continue;
+            if (o.start().isAfter(free))
+                addSlot(res, free, o.start(), minimum);
+            free = end;
         }
+        if (to.isAfter(free))
+            addSlot(res, free, to, minimum);
         return res;
     }
 
-    public boolean isFreeFor(Event e) {
-        LocalDateTime s1 = e.getStart();
-        LocalDateTime e1 = e.getStart().plus(e.getDuration());
+    private static void addSlot(List<TimeSlot> slots, LocalDateTime start, LocalDateTime end, Duration minimum) {
+        TimeSlot slot = new TimeSlot(start, end);
+        if (slot.duration().compareTo(minimum) >= 0)
+            slots.add(slot);
+    }
 
-        for (Event other : events) {
-            if (other.hasRepetition())
-                continue;
+    /**
+     * Finds the events of this agenda by title
+     *
+     * @param title the title to search
+     * @return the events that have that title
+     */
+    public List<Event> findByTitle(String title) {
+        return findByTitle(title, TitleMatch.EXACT);
+    }
 
-            LocalDateTime s2 = other.getStart();
-            LocalDateTime e2 = other.getStart().plus(other.getDuration());
+    /**
+     * Finds the events of this agenda by title, exactly, ignoring case, or by
+     * prefix. Prefix searches list the events by ascending lower-case title.
+     *
+     * @param title the title, or the prefix of the title, to search
+     * @param match how the title is matched
+     * @return the matching events
+     */
+    public List<Event> findByTitle(String title, TitleMatch match) {
+        AgendaMetrics m = metrics;
+        if (!m.isEnabled())
+            return titles.find(title, match);
+        long start = System.nanoTime();
+        List<Event> res = titles.find(title, match);
+        m.findByTitle(System.nanoTime() - start, match, res.size());
+        return res;
+    }
 
-            // Conflit si les deux intervalles se chevauchent strictement (sans se toucher)
-            if (e1.isAfter(s2) && e2.isAfter(s1))
-                return false;
-        }
-        return true;
+    /**
+     * Determines if there is room in this agenda for an event : no other
+     * event, repeating or not, overlaps it. If the event repeats, only its
+     * first occurrence is checked. An event of this agenda does not conflict
+     * with itself : it is free if no other event overlaps it.
+     *
+     * @param e the event to test
+     * @return true if no other event of this agenda overlaps it
+     */
+    public boolean isFreeFor(Event e) {
+        AgendaMetrics m = metrics;
+        if (!m.isEnabled())
+            return conflicts.conflictsOf(e).isEmpty();
+        long start = System.nanoTime();
+        List<Event> found = conflicts.conflictsOf(e);
+        m.isFreeFor(System.nanoTime() - start, found.size());
+        return found.isEmpty();
+    }
+
+    /**
+     * Finds the events of this agenda that overlap an event, including the
+     * occurrences of repeating events. If the event repeats, only its first
+     * occurrence is checked. The event itself, if it is in this agenda, is not
+     * a conflict.
+     *
+     * @param e the event to test
+     * @return the events that overlap it, non-repeating ones first
+     */
+    public List<Event> findConflicts(Event e) {
+        return conflicts.conflictsOf(e);
+    }
+
+    /**
+     * Finds the conflicts of several events at once, for instance before a bulk
+     * import. The events are checked against this agenda and against each
+     * other, in a single sweep over the agenda.
+     *
+     * @param candidates the events to test
+     * @return for each event that has conflicts, in the order of the collection,
+     * the events it overlaps
+     */
+    public Map<Event, List<Event>> findConflicts(Collection<Event> candidates) {
+        return conflicts.conflictsOf(candidates);
     }
 }
@@ -0,0 +1,254 @@
+package agenda;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Description : A compact binary file holding the events of an agenda, read
+ * through a memory mapping.
+ * <p>
+ * The file is made of a header, one fixed-width record per event (see
+ * {@link EventLayout}), a table of exceptions as epoch days, and a string
+ * table holding each distinct title once. Opening a file only maps it :
+ * events are built when they are first accessed. A file is limited to 2 GiB.
+ */
+public final class AgendaFile {
+
+    private static final int MAGIC = 0x41474441; // "AGDA"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private final ByteBuffer buffer;
+    private final int eventCount;
+    private final int titleCount;
+    private final int exceptionsBase;
+    private final int titleOffsetsBase;
+    private final int titleBytesBase;
+
+    // Les objets déjà construits, à la demande
+    private final Event[] events;
+    private final String[] titles;
+
+    private AgendaFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not an agenda file");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported agenda file version : " + buffer.getInt(4));
+        eventCount = buffer.getInt(8);
+        titleCount = buffer.getInt(12);
+        int exceptionCount = buffer.getInt(16);
+        int titleBytes = buffer.getInt(20);
+        exceptionsBase = HEADER_SIZE + eventCount * EventLayout.RECORD_SIZE;
+        titleOffsetsBase = exceptionsBase + 8 * exceptionCount;
+        titleBytesBase = titleOffsetsBase + 4 * (titleCount + 1);
+        if (buffer.limit() < (long) titleBytesBase + titleBytes)
+            throw new IOException("Truncated agenda file");
+        events = new Event[eventCount];
+        titles = new String[titleCount];
+    }
+
+    /**
+     * Maps an agenda file
+     *
+     * @param file the file to read
+     * @return the mapped file, whose events are built on demand
+     * @throws IOException if the file can not be read or is not an agenda file
+     */
+    public static AgendaFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new AgendaFile(buffer);
+        }
+    }
+
+    /**
+     * Writes the events of an agenda to a file
+     *
+     * @param agenda the agenda to save
+     * @param file   the file to write, replaced if it exists
+     * @throws IOException if the file can not be written
+     */
+    public static void write(Agenda agenda, Path file) throws IOException {
+        write(agenda.getEvents(), file);
+    }
+
+    /**
+     * Writes events to a file
+     *
+     * @param events the events to save
+     * @param file   the file to write, replaced if it exists
+     * @throws IOException if the file can not be written
+     */
+    public static void write(Collection<Event> events, Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(events, out);
+        }
+    }
+
+    /**
+     * Writes events in the format of an agenda file
+     *
+     * @param events the events to save
+     * @param stream the stream to write to, left open
+     * @throws IOException if the stream can not be written
+     */
+    static void write(Collection<Event> events, OutputStream stream) throws IOException {
+        // Première passe : la table des titres et le nombre d'exceptions
+        Map<String, Integer> titleIds = new HashMap<>();
+        List<byte[]> titleBytes = new ArrayList<>();
+        long titleLength = 0;
+        long exceptionCount = 0;
+        for (Event e : events) {
+            String title = e.getTitle();
+            if (title != null && !titleIds.containsKey(title)) {
+                titleIds.put(title, titleBytes.size());
+                byte[] bytes = title.getBytes(StandardCharsets.UTF_8);
+                titleBytes.add(bytes);
+                titleLength += bytes.length;
+            }
+            if (e.repetition() != null)
+                exceptionCount += e.repetition().getNumberOfExceptions();
+        }
+        // Le fichier entier doit tenir dans un seul mapping
+        if (fileSize(events.size(), exceptionCount, titleBytes.size(), titleLength) > Integer.MAX_VALUE)
+            throw new IOException("Too many events for an agenda file");
+
+        // Seconde passe : les enregistrements sont écrits au fil de l'eau
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(events.size());
+        out.writeInt(titleBytes.size());
+        out.writeInt((int) exceptionCount);
+        out.writeInt((int) titleLength);
+        out.writeLong(0); // réservé
+        ByteBuffer record = ByteBuffer.allocate(EventLayout.RECORD_SIZE);
+        int offset = 0;
+        for (Event e : events) {
+            int count = e.repetition() == null ? 0 : e.repetition().getNumberOfExceptions();
+            int titleId = e.getTitle() == null ? -1 : titleIds.get(e.getTitle());
+            EventLayout.write(record, 0, e, titleId, offset, count);
+            out.write(record.array());
+            offset += count;
+        }
+        try {
+            for (Event e : events) {
+                if (e.repetition() != null)
+                    e.repetition().forEachException(date -> writeEpochDay(out, date));
+            }
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        offset = 0;
+        for (byte[] bytes : titleBytes) {
+            out.writeInt(offset);
+            offset += bytes.length;
+        }
+        out.writeInt(offset);
+        for (byte[] bytes : titleBytes)
+            out.write(bytes);
+        out.flush();
+    }
+
+    /**
+     * Computes the size of an agenda file : its header, the records, the
+     * exceptions, the title offsets and the title bytes
+     *
+     * @param eventCount     the number of events
+     * @param exceptionCount the number of exceptions of all the events
+     * @param titleCount     the number of distinct titles
+     * @param titleLength    the number of bytes of all the distinct titles
+     * @return the size of the file, in bytes
+     */
+    static long fileSize(long eventCount, long exceptionCount, long titleCount, long titleLength) {
+        return HEADER_SIZE + eventCount * EventLayout.RECORD_SIZE + 8 * exceptionCount + 4 * (titleCount + 1)
+                + titleLength;
+    }
+
+    private static void writeEpochDay(DataOutputStream out, LocalDate date) {
+        try {
+            out.writeLong(date.toEpochDay());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * @return the number of events in this file
+     */
+    public int size() {
+        return eventCount;
+    }
+
+    /**
+     * Gets an event of this file, built on first access
+     *
+     * @param index the index of the event, in the order it was written
+     * @return the event
+     */
+    public Event event(int index) {
+        Event e = events[index];
+        if (e == null) {
+            int at = HEADER_SIZE + index * EventLayout.RECORD_SIZE;
+            e = EventLayout.read(buffer, at, title(EventLayout.titleId(buffer, at)), buffer, exceptionsBase);
+            events[index] = e;
+        }
+        return e;
+    }
+
+    /**
+     * @return a view of the events of this file, each built on first access
+     */
+    public List<Event> events() {
+        return new AbstractList<>() {
+            @Override
+            public Event get(int index) {
+                return event(index);
+            }
+
+            @Override
+            public int size() {
+                return eventCount;
+            }
+        };
+    }
+
+    /**
+     * Builds an agenda holding all the events of this file
+     *
+     * @return a new agenda
+     */
+    public Agenda toAgenda() {
+        Agenda agenda = new Agenda();
+        agenda.addAll(events());
+        return agenda;
+    }
+
+    private String title(int id) {
+        if (id < 0)
+            return null;
+        String title = titles[id];
+        if (title == null) {
+            int start = buffer.getInt(titleOffsetsBase + 4 * id);
+            int end = buffer.getInt(titleOffsetsBase + 4 * (id + 1));
+            byte[] bytes = new byte[end - start];
+            buffer.get(titleBytesBase + start, bytes);
+            title = new String(bytes, StandardCharsets.UTF_8);
+            titles[id] = title;
+        }
+        return title;
+    }
+}
@@ -0,0 +1,602 @@
+package agenda;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Description : Makes an agenda durable with a snapshot and an append-only
+ * journal of its changes.
+ * <p>
+ * Every change to the agenda or to its events is appended to the journal as a
+ * small record. Records are buffered in memory and written to disk in groups :
+ * a background thread forces them every group-commit interval, so many
+ * changes share one fsync. {@link #sync()} forces them at once. When the
+ * journal holds enough records, the agenda is encoded as a new snapshot (an
+ * {@link AgendaFile}) ; the background thread writes it and starts an empty
+ * journal.
+ * <p>
+ * Opening a directory recovers the agenda : the last snapshot is loaded and
+ * the journal is replayed over it. A torn record at the end of the journal,
+ * left by a crash, is discarded. Like {@link Agenda}, the journaled agenda must
+ * be changed by one thread at a time.
+ */
+public final class AgendaJournal implements AgendaListener, Closeable {
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+
+    private static final byte ADD_EVENT = 1;
+    private static final byte SET_REPETITION = 2;
+    private static final byte ADD_EXCEPTION = 3;
+    private static final byte REMOVE_EXCEPTION = 4;
+    private static final byte TERMINATION_DATE = 5;
+    private static final byte TERMINATION_COUNT = 6;
+    private static final byte REMOVE_EVENT = 7;
+    private static final byte UPDATE_EVENT = 8;
+    private static final byte CLEAR = 9;
+
+    private static final ChronoUnit[] UNITS = ChronoUnit.values();
+
+    private final Path directory;
+    private final Agenda agenda;
+    private final int compactionThreshold;
+
+    /**
+     * The ids of the events in the journal : their rank in the snapshot, then
+     * their order of addition. The id of a removed event is not reused.
+     */
+    private final Map<Event, Integer> ids = new IdentityHashMap<>();
+    private int nextId;
+
+    // L'enregistrement en cours, écrit par le thread qui modifie l'agenda
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private int recordCount;
+
+    // Les enregistrements pas encore écrits, protégés par this
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    /**
+     * A snapshot to write, and the records of the current journal that
+     * precede it
+     */
+    private record Compaction(byte[] snapshot, byte[] tail) {
+    }
+
+    // La compaction à terminer avant d'écrire les enregistrements suivants, protégée par this
+    private Compaction scheduled;
+
+    // Le fichier du journal, protégé par ioLock
+    private final Object ioLock = new Object();
+    private long generation;
+    private FileChannel channel;
+    private IOException failure;
+
+    private final ScheduledExecutorService flusher;
+
+    private AgendaJournal(Path directory, Agenda agenda, List<Event> byId, long generation, FileChannel channel,
+            int recordCount, Duration groupCommit, int compactionThreshold) {
+        this.directory = directory;
+        this.agenda = agenda;
+        this.generation = generation;
+        this.channel = channel;
+        this.recordCount = recordCount;
+        this.compactionThreshold = compactionThreshold;
+        // Le journal courant continue : ses enregistrements suivants gardent les ids du rejeu
+        for (int id = 0; id < byId.size(); id++)
+            if (byId.get(id) != null)
+                ids.put(byId.get(id), id);
+        this.nextId = byId.size();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "agenda-journal-" + directory.getFileName());
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, groupCommit.toMillis());
+        flusher.scheduleWithFixedDelay(this::flushQuietly, period, period, TimeUnit.MILLISECONDS);
+        agenda.addListener(this);
+    }
+
+    /**
+     * Opens a journaled agenda, forcing changes every 10 ms and compacting every
+     * 100 000 records
+     *
+     * @param directory the directory of the snapshot and journal, created if needed
+     * @return the journal, whose agenda holds the recovered events
+     * @throws IOException if the files can not be read or written
+     */
+    public static AgendaJournal open(Path directory) throws IOException {
+        return open(directory, Duration.ofMillis(10), 100_000);
+    }
+
+    /**
+     * Opens a journaled agenda
+     *
+     * @param directory           the directory of the snapshot and journal,
+     *                            created if needed
+     * @param groupCommit         the delay between two forced writes of the
+     *                            journal
+     * @param compactionThreshold the number of records after which a new
+     *                            snapshot is written
+     * @return the journal, whose agenda holds the recovered events
+     * @throws IOException if the files can not be read or written
+     */
+    public static AgendaJournal open(Path directory, Duration groupCommit, int compactionThreshold)
+            throws IOException {
+        Files.createDirectories(directory);
+        long generation = lastGeneration(directory);
+        Path snapshot = snapshotFile(directory, generation);
+        Agenda agenda = Files.exists(snapshot) ? AgendaFile.open(snapshot).toAgenda() : new Agenda();
+        List<Event> byId = new ArrayList<>(agenda.getEvents());
+        Path journal = journalFile(directory, generation);
+        FileChannel channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        int records = replay(channel, agenda, byId);
+        deleteOlderThan(directory, generation);
+        return new AgendaJournal(directory, agenda, byId, generation, channel, records, groupCommit,
+                compactionThreshold);
+    }
+
+    /**
+     * @return the journaled agenda
+     */
+    public Agenda agenda() {
+        return agenda;
+    }
+
+    /**
+     * Writes and forces to disk all the changes made so far
+     *
+     * @throws IOException if the journal can not be written
+     */
+    public void sync() throws IOException {
+        flush();
+    }
+
+    /**
+     * Writes a new snapshot of the agenda and starts an empty journal
+     *
+     * @throws IOException if the files can not be written
+     */
+    public void compact() throws IOException {
+        scheduleCompaction();
+        flush();
+    }
+
+    /**
+     * Encodes the agenda as the next snapshot, and sets aside the records it
+     * covers. Called by the thread that changes the agenda, the only one that
+     * may read it ; the files are written by the next flush.
+     */
+    private void scheduleCompaction() throws IOException {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        AgendaFile.write(agenda.getEvents(), snapshot);
+        synchronized (this) {
+            byte[] tail = pending.toByteArray();
+            // Une compaction pas encore écrite est remplacée : ses enregistrements la précèdent
+            if (scheduled != null) {
+                byte[] earlier = scheduled.tail();
+                byte[] both = Arrays.copyOf(earlier, earlier.length + tail.length);
+                System.arraycopy(tail, 0, both, earlier.length, tail.length);
+                tail = both;
+            }
+            scheduled = new Compaction(snapshot.toByteArray(), tail);
+            pending = new ByteArrayOutputStream();
+        }
+        recordCount = 0;
+        ids.clear();
+        nextId = 0;
+        for (Event e : agenda.getEvents())
+            ids.put(e, nextId++);
+    }
+
+    // Termine le journal courant, écrit l'instantané et ouvre le journal suivant
+    private void writeCompaction(Compaction compaction) throws IOException {
+        write(compaction.tail());
+        long next = generation + 1;
+        Path snapshot = snapshotFile(directory, next);
+        Path temporary = directory.resolve(snapshot.getFileName() + ".tmp");
+        try (FileChannel written = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(compaction.snapshot());
+            while (buffer.hasRemaining())
+                written.write(buffer);
+            written.force(true);
+        }
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        FileChannel nextChannel = FileChannel.open(journalFile(directory, next), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        channel.close();
+        channel = nextChannel;
+        generation = next;
+        deleteOlderThan(directory, next);
+    }
+
+    /**
+     * Forces the pending changes, stops the background writes and detaches
+     * from the agenda
+     *
+     * @throws IOException if the journal can not be written
+     */
+    @Override
+    public void close() throws IOException {
+        agenda.removeListener(this);
+        // Sans interruption : une écriture en cours fermerait le journal
+        flusher.shutdown();
+        synchronized (ioLock) {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // Enregistrement des changements
+
+    @Override
+    public void eventAdded(Event e) {
+        // Agenda.addAll notifie une fois tout le lot ajouté : une compaction au milieu
+        // des notifications a déjà mis la fin du lot dans l'instantané
+        if (ids.containsKey(e))
+            return;
+        int id = nextId++;
+        ids.put(e, id);
+        try {
+            record.writeByte(ADD_EVENT);
+            record.writeInt(id);
+            writeSchedule(e);
+            Repetition repetition = e.repetition();
+            record.writeByte(repetition == null ? 0 : repetition.getFrequency().ordinal() + 1);
+            if (repetition != null) {
+                record.writeInt(repetition.getNumberOfExceptions());
+                repetition.forEachException(date -> writeLong(date.toEpochDay()));
+                writeTermination(repetition.getTermination());
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        append();
+    }
+
+    @Override
+    public void eventRemoved(Event e) {
+        writeHeader(REMOVE_EVENT, e);
+        ids.remove(e);
+        append();
+    }
+
+    @Override
+    public void eventUpdated(Event e) {
+        writeHeader(UPDATE_EVENT, e);
+        try {
+            writeSchedule(e);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        append();
+    }
+
+    @Override
+    public void cleared() {
+        writeByte(CLEAR);
+        writeInt(-1);
+        ids.clear();
+        append();
+    }
+
+    @Override
+    public void repetitionChanged(Event e) {
+        writeHeader(SET_REPETITION, e);
+        writeByte(e.getFrequency().ordinal() + 1);
+        append();
+    }
+
+    @Override
+    public void exceptionAdded(Event e, LocalDate date) {
+        writeHeader(ADD_EXCEPTION, e);
+        writeLong(date.toEpochDay());
+        append();
+    }
+
+    @Override
+    public void exceptionRemoved(Event e, LocalDate date) {
+        writeHeader(REMOVE_EXCEPTION, e);
+        writeLong(date.toEpochDay());
+        append();
+    }
+
+    @Override
+    public void terminationChanged(Event e) {
+        Termination t = e.repetition().getTermination();
+        writeHeader(t.isCountBounded() ? TERMINATION_COUNT : TERMINATION_DATE, e);
+        writeLong(t.isCountBounded() ? t.numberOfOccurrences() : t.terminationDateInclusive().toEpochDay());
+        append();
+    }
+
+    // Le titre, le début et la durée d'un événement
+    private void writeSchedule(Event e) throws IOException {
+        String title = e.getTitle();
+        record.writeBoolean(title != null);
+        if (title != null) {
+            byte[] bytes = title.getBytes(StandardCharsets.UTF_8);
+            record.writeInt(bytes.length);
+            record.write(bytes);
+        }
+        record.writeLong(e.getStart().toEpochSecond(ZoneOffset.UTC));
+        record.writeInt(e.getStart().getNano());
+        record.writeLong(e.getDuration().getSeconds());
+        record.writeInt(e.getDuration().getNano());
+    }
+
+    private void writeTermination(Termination t) {
+        if (t == null)
+            writeByte(0);
+        else {
+            writeByte(t.isCountBounded() ? TERMINATION_COUNT : TERMINATION_DATE);
+            writeLong(t.isCountBounded() ? t.numberOfOccurrences() : t.terminationDateInclusive().toEpochDay());
+        }
+    }
+
+    private void writeHeader(byte type, Event e) {
+        Integer id = ids.get(e);
+        if (id == null)
+            throw new IllegalStateException("Event not in the journaled agenda : " + e);
+        writeByte(type);
+        writeInt(id);
+    }
+
+    private void writeByte(int value) {
+        try {
+            record.writeByte(value);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void writeInt(int value) {
+        try {
+            record.writeInt(value);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void writeLong(long value) {
+        try {
+            record.writeLong(value);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Frames the current record with its length and checksum and adds it to
+     * the pending records. Schedules a compaction once the journal holds
+     * enough records, and wakes up the background thread to write it.
+     */
+    private void append() {
+        byte[] body = recordBytes.toByteArray();
+        recordBytes.reset();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        synchronized (this) {
+            DataOutputStream out = new DataOutputStream(pending);
+            try {
+                out.writeInt(body.length);
+                out.writeInt((int) crc.getValue());
+                out.write(body);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        if (++recordCount >= compactionThreshold) {
+            try {
+                scheduleCompaction();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            if (!flusher.isShutdown())
+                flusher.execute(this::flushQuietly);
+        }
+    }
+
+    // Écriture groupée des enregistrements
+
+    private void flush() throws IOException {
+        synchronized (ioLock) {
+            if (failure != null)
+                throw failure;
+            Compaction compaction;
+            byte[] batch;
+            synchronized (this) {
+                compaction = scheduled;
+                scheduled = null;
+                batch = pending.toByteArray();
+                pending = new ByteArrayOutputStream();
+            }
+            try {
+                // Les enregistrements en attente suivent la compaction : ils vont au nouveau journal
+                if (compaction != null)
+                    writeCompaction(compaction);
+                write(batch);
+            } catch (IOException ex) {
+                failure = ex;
+                throw ex;
+            }
+        }
+    }
+
+    // Ajoute des enregistrements au journal courant, et les force sur le disque
+    private void write(byte[] records) throws IOException {
+        if (records.length == 0)
+            return;
+        ByteBuffer buffer = ByteBuffer.wrap(records);
+        while (buffer.hasRemaining())
+            channel.write(buffer, channel.size());
+        channel.force(false);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException ex) {
+            // Conservée dans failure, et signalée au prochain sync()
+        }
+    }
+
+    // Reprise
+
+    /**
+     * Replays the records of a journal over an agenda, and truncates the journal
+     * after its last complete record. The events are found by their id in
+     * byId, where a removed event is replaced by null.
+     *
+     * @return the number of records replayed
+     */
+    private static int replay(FileChannel channel, Agenda agenda, List<Event> byId) throws IOException {
+        ByteBuffer log = ByteBuffer.allocate((int) channel.size());
+        while (log.hasRemaining() && channel.read(log, log.position()) >= 0) {
+            // lecture complète du journal
+        }
+        log.flip();
+        int records = 0;
+        int valid = 0;
+        CRC32 crc = new CRC32();
+        while (log.remaining() >= 8) {
+            int length = log.getInt();
+            int checksum = log.getInt();
+            if (length < 0 || length > log.remaining())
+                break;
+            byte[] body = new byte[length];
+            log.get(body);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != checksum)
+                break;
+            apply(ByteBuffer.wrap(body), agenda, byId);
+            records++;
+            valid = log.position();
+        }
+        channel.truncate(valid);
+        return records;
+    }
+
+    private static void apply(ByteBuffer body, Agenda agenda, List<Event> byId) {
+        byte type = body.get();
+        int id = body.getInt();
+        if (type == ADD_EVENT) {
+            String title = readTitle(body);
+            LocalDateTime start = readStart(body);
+            Duration duration = Duration.ofSeconds(body.getLong(), body.getInt());
+            Event e = new Event(title, start, duration);
+            int frequency = body.get();
+            if (frequency != 0) {
+                e.setRepetition(UNITS[frequency - 1]);
+                int exceptions = body.getInt();
+                for (int i = 0; i < exceptions; i++)
+                    e.addException(LocalDate.ofEpochDay(body.getLong()));
+                byte termination = body.get();
+                if (termination == TERMINATION_DATE)
+                    e.setTermination(LocalDate.ofEpochDay(body.getLong()));
+                else if (termination == TERMINATION_COUNT)
+                    e.setTermination(body.getLong());
+            }
+            agenda.addEvent(e);
+            byId.add(e);
+            return;
+        }
+        if (type == CLEAR) {
+            agenda.clear();
+            Collections.fill(byId, null);
+            return;
+        }
+        Event e = byId.get(id);
+        if (e == null)
+            throw new IllegalStateException("Journal record for a removed event : " + id);
+        switch (type) {
+            case REMOVE_EVENT -> {
+                agenda.removeEvent(e);
+                byId.set(id, null);
+            }
+            case UPDATE_EVENT -> agenda.updateEvent(e, readTitle(body), readStart(body),
+                    Duration.ofSeconds(body.getLong(), body.getInt()));
+            case SET_REPETITION -> e.setRepetition(UNITS[body.get() - 1]);
+            case ADD_EXCEPTION -> e.addException(LocalDate.ofEpochDay(body.getLong()));
+            case REMOVE_EXCEPTION -> e.removeException(LocalDate.ofEpochDay(body.getLong()));
+            case TERMINATION_DATE -> e.setTermination(LocalDate.ofEpochDay(body.getLong()));
+            case TERMINATION_COUNT -> e.setTermination(body.getLong());
+            default -> throw new IllegalStateException("Unknown journal record : " + type);
+        }
+    }
+
+    private static String readTitle(ByteBuffer body) {
+        if (body.get() == 0)
+            return null;
+        byte[] bytes = new byte[body.getInt()];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static LocalDateTime readStart(ByteBuffer body) {
+        return LocalDateTime.ofEpochSecond(body.getLong(), body.getInt(), ZoneOffset.UTC);
+    }
+
+    // Fichiers
+
+    private static Path snapshotFile(Path directory, long generation) {
+        return directory.resolve(SNAPSHOT_PREFIX + generation + SNAPSHOT_SUFFIX);
+    }
+
+    private static Path journalFile(Path directory, long generation) {
+        return directory.resolve(JOURNAL_PREFIX + generation + JOURNAL_SUFFIX);
+    }
+
+    // La génération la plus récente : celle du dernier instantané complet
+    private static long lastGeneration(Path directory) throws IOException {
+        long last = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*")) {
+            for (Path file : files)
+                last = Math.max(last, generationOf(file, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX));
+        }
+        return last;
+    }
+
+    private static void deleteOlderThan(Path directory, long generation) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                long g = Math.max(generationOf(file, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX),
+                        generationOf(file, JOURNAL_PREFIX, JOURNAL_SUFFIX));
+                if (g >= 0 && g < generation)
+                    Files.delete(file);
+            }
+        }
+    }
+
+    // La génération d'un fichier de ce journal, -1 pour un autre fichier
+    private static long generationOf(Path file, String prefix, String suffix) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(prefix) || !name.endsWith(suffix))
+            return -1;
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package agenda;
+
+import java.time.LocalDate;
+
+/**
+ * Description : Receives the changes made to an {@link Agenda} and to its
+ * events, after they are applied. All methods do nothing by default.
+ *
+ * @see Agenda#addListener(AgendaListener)
+ */
+public interface AgendaListener {
+
+    /**
+     * An event was added to the agenda
+     *
+     * @param e the added event
+     */
+    default void eventAdded(Event e) {
+    }
+
+    /**
+     * An event was removed from the agenda
+     *
+     * @param e the removed event
+     */
+    default void eventRemoved(Event e) {
+    }
+
+    /**
+     * The title, start or duration of an event of the agenda was changed
+     *
+     * @param e the changed event
+     */
+    default void eventUpdated(Event e) {
+    }
+
+    /**
+     * All the events of the agenda were removed
+     */
+    default void cleared() {
+    }
+
+    /**
+     * The repetition of an event of the agenda was set
+     *
+     * @param e the changed event
+     */
+    default void repetitionChanged(Event e) {
+    }
+
+    /**
+     * An exception was added to an event of the agenda
+     *
+     * @param e    the changed event
+     * @param date the date of the exception
+     */
+    default void exceptionAdded(Event e, LocalDate date) {
+    }
+
+    /**
+     * An exception was removed from an event of the agenda
+     *
+     * @param e    the changed event
+     * @param date the date of the exception
+     */
+    default void exceptionRemoved(Event e, LocalDate date) {
+    }
+
+    /**
+     * The termination of an event of the agenda was set
+     *
+     * @param e the changed event
+     */
+    default void terminationChanged(Event e) {
+    }
+}
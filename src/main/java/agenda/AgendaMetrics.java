@@ -0,0 +1,83 @@
+package agenda;
+
+/**
+ * Description : Receives measures of the operations of an {@link Agenda}, to
+ * be forwarded to a monitoring system. Set on an agenda with
+ * {@link Agenda#setMetrics(AgendaMetrics)}.
+ * <p>
+ * All the methods do nothing by default. The agenda only reads the clock when
+ * {@link #isEnabled()} is true, so {@link #NOOP}, the default, costs a single
+ * test per operation. Measures are taken on the thread of the operation :
+ * an implementation shared between agendas, or read from several threads,
+ * must be thread-safe.
+ */
+public interface AgendaMetrics {
+
+    /**
+     * The metrics of an agenda that is not measured
+     */
+    AgendaMetrics NOOP = new AgendaMetrics() {
+    };
+
+    /**
+     * @return true if the agenda must measure its operations
+     */
+    default boolean isEnabled() {
+        return false;
+    }
+
+    /**
+     * An event was added
+     *
+     * @param nanos           the time taken, indexes included
+     * @param events          the number of events of the agenda
+     * @param simpleEvents    the number of events in the interval index
+     * @param repeatingEvents the number of events in the recurrence index
+     */
+    default void eventAdded(long nanos, int events, int simpleEvents, int repeatingEvents) {
+    }
+
+    /**
+     * A batch of events was added with {@link Agenda#addAll(java.util.Collection)}
+     *
+     * @param nanos           the time taken, indexes included
+     * @param added           the number of events of the batch
+     * @param events          the number of events of the agenda
+     * @param simpleEvents    the number of events in the interval index
+     * @param repeatingEvents the number of events in the recurrence index
+     */
+    default void eventsAdded(long nanos, int added, int events, int simpleEvents, int repeatingEvents) {
+    }
+
+    /**
+     * The events of a day were computed
+     *
+     * @param nanos   the time taken
+     * @param scanned the number of events tested : those found by the
+     *                interval index, and the repeating candidates of that
+     *                day. 0 if the answer came from the day cache.
+     * @param matched the number of events of that day
+     * @param cached  true if the answer came from the day cache
+     */
+    default void eventsInDay(long nanos, int scanned, int matched, boolean cached) {
+    }
+
+    /**
+     * Events were searched by title
+     *
+     * @param nanos the time taken
+     * @param match how the title was matched
+     * @param found the number of events found
+     */
+    default void findByTitle(long nanos, TitleMatch match, int found) {
+    }
+
+    /**
+     * An event was tested against the agenda
+     *
+     * @param nanos     the time taken
+     * @param conflicts the number of events it overlaps
+     */
+    default void isFreeFor(long nanos, int conflicts) {
+    }
+}
@@ -0,0 +1,282 @@
+package agenda;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Description : Hosts the agendas of many owners, each kept in its own
+ * {@link AgendaFile} in a directory.
+ * <p>
+ * The owners are spread over lock stripes by the hash of their id. Each
+ * stripe keeps its hot agendas in memory, in least-recently-used order, under
+ * its share of a memory budget. Past the budget, the coldest agendas are
+ * evicted : written to disk if they were changed, then dropped. They are
+ * reloaded on the next access. The memory of an agenda is estimated from its
+ * number of events.
+ * <p>
+ * An agenda is only reached through {@link #read(String, Function)} and
+ * {@link #update(String, Consumer)}, under the lock of its stripe : it must
+ * not be kept once the call returns. Owners of different stripes are served
+ * in parallel.
+ */
+public final class AgendaStore implements AutoCloseable {
+
+    /**
+     * The estimated memory of an empty agenda, in bytes
+     */
+    static final long AGENDA_BYTES = 2_048;
+
+    /**
+     * The estimated memory of an event and of its index entries, in bytes
+     */
+    static final long EVENT_BYTES = 320;
+
+    private static final String SUFFIX = ".agenda";
+
+    /**
+     * The counters of a store, since it was opened
+     *
+     * @param hits            the accesses to an agenda already in memory
+     * @param misses          the accesses that loaded or created an agenda
+     * @param evictions       the agendas dropped from memory
+     * @param residentAgendas the number of agendas in memory
+     * @param residentBytes   the estimated memory of the agendas in memory
+     */
+    public record Stats(long hits, long misses, long evictions, int residentAgendas, long residentBytes) {
+    }
+
+    // Un agenda en mémoire, et son poids au dernier accès
+    private static final class Entry {
+        final Agenda agenda;
+        long bytes;
+        boolean dirty;
+
+        Entry(Agenda agenda) {
+            this.agenda = agenda;
+            this.bytes = weigh(agenda);
+        }
+    }
+
+    private final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        // Dans l'ordre des accès : le premier est le plus froid
+        final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        long bytes;
+
+        Entry get(String owner) throws IOException {
+            Entry entry = entries.get(owner);
+            if (entry != null) {
+                hits.increment();
+                return entry;
+            }
+            misses.increment();
+            Path file = fileOf(owner);
+            entry = new Entry(Files.exists(file) ? AgendaFile.open(file).toAgenda() : new Agenda());
+            entries.put(owner, entry);
+            bytes += entry.bytes;
+            return entry;
+        }
+
+        // Pèse à nouveau l'agenda utilisé, puis évince les plus froids au-delà du budget
+        void release(String owner, Entry entry) throws IOException {
+            long weight = weigh(entry.agenda);
+            bytes += weight - entry.bytes;
+            entry.bytes = weight;
+            Iterator<Map.Entry<String, Entry>> coldest = entries.entrySet().iterator();
+            while (bytes > stripeBudget && coldest.hasNext()) {
+                Map.Entry<String, Entry> cold = coldest.next();
+                // L'agenda qui vient d'être utilisé reste en mémoire, même seul au-delà du budget
+                if (cold.getKey().equals(owner))
+                    continue;
+                if (cold.getValue().dirty)
+                    save(cold.getKey(), cold.getValue());
+                coldest.remove();
+                bytes -= cold.getValue().bytes;
+                evictions.increment();
+            }
+        }
+    }
+
+    private final Path directory;
+    private final Stripe[] stripes;
+    private final long stripeBudget;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Opens a store with four lock stripes per available processor
+     *
+     * @param directory    the directory of the agenda files, created if needed
+     * @param memoryBudget the estimated memory the agendas may use, in bytes
+     * @throws IOException if the directory can not be created
+     */
+    public AgendaStore(Path directory, long memoryBudget) throws IOException {
+        this(directory, memoryBudget, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Opens a store
+     *
+     * @param directory    the directory of the agenda files, created if needed
+     * @param memoryBudget the estimated memory the agendas may use, in bytes,
+     *                     shared evenly between the stripes
+     * @param stripeCount  the number of lock stripes, rounded up to a power of
+     *                     two
+     * @throws IOException if the directory can not be created
+     */
+    public AgendaStore(Path directory, long memoryBudget, int stripeCount) throws IOException {
+        if (memoryBudget <= 0)
+            throw new IllegalArgumentException("Memory budget must be positive : " + memoryBudget);
+        if (stripeCount < 1)
+            throw new IllegalArgumentException("Stripe count must be positive : " + stripeCount);
+        Files.createDirectories(directory);
+        this.directory = directory;
+        int count = stripeCount == 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++)
+            stripes[i] = new Stripe();
+        this.stripeBudget = Math.max(1, memoryBudget / count);
+    }
+
+    /**
+     * Runs a query on the agenda of an owner, loading it if needed
+     *
+     * @param owner the id of the owner
+     * @param query the query, that must not change the agenda nor keep it
+     * @param <R>   the type of the result
+     * @return the result of the query
+     * @throws IOException if the agenda can not be loaded, or a colder one
+     *                     can not be evicted
+     */
+    public <R> R read(String owner, Function<Agenda, R> query) throws IOException {
+        return access(owner, false, query);
+    }
+
+    /**
+     * Changes the agenda of an owner, loading it if needed. The agenda is
+     * written to disk when it is evicted, or by {@link #flush()}.
+     *
+     * @param owner   the id of the owner
+     * @param changes the changes, that must not keep the agenda
+     * @throws IOException if the agenda can not be loaded, or a colder one
+     *                     can not be evicted
+     */
+    public void update(String owner, Consumer<Agenda> changes) throws IOException {
+        access(owner, true, agenda -> {
+            changes.accept(agenda);
+            return null;
+        });
+    }
+
+    private <R> R access(String owner, boolean write, Function<Agenda, R> action) throws IOException {
+        Stripe stripe = stripeOf(owner);
+        stripe.lock.lock();
+        try {
+            Entry entry = stripe.get(owner);
+            // Marqué avant l'action : un changement interrompu par une exception est aussi écrit
+            entry.dirty |= write;
+            R res = action.apply(entry.agenda);
+            stripe.release(owner, entry);
+            return res;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the agenda of an owner, in memory and on disk
+     *
+     * @param owner the id of the owner
+     * @throws IOException if the file can not be deleted
+     */
+    public void delete(String owner) throws IOException {
+        Stripe stripe = stripeOf(owner);
+        stripe.lock.lock();
+        try {
+            Entry entry = stripe.entries.remove(owner);
+            if (entry != null)
+                stripe.bytes -= entry.bytes;
+            Files.deleteIfExists(fileOf(owner));
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Writes to disk every agenda changed since it was loaded or last written
+     *
+     * @throws IOException if an agenda can not be written
+     */
+    public void flush() throws IOException {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                for (Map.Entry<String, Entry> e : stripe.entries.entrySet())
+                    if (e.getValue().dirty)
+                        save(e.getKey(), e.getValue());
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the changed agendas to disk
+     *
+     * @throws IOException if an agenda can not be written
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * @return the counters of this store
+     */
+    public Stats stats() {
+        int agendas = 0;
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                agendas += stripe.entries.size();
+                bytes += stripe.bytes;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), agendas, bytes);
+    }
+
+    private Stripe stripeOf(String owner) {
+        int h = owner.hashCode();
+        // Mélange les bits de poids fort dans ceux qui choisissent la bande
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    // Le nom du fichier ne dépend que de l'identifiant, quels que soient ses caractères
+    private Path fileOf(String owner) {
+        return directory.resolve(Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(owner.getBytes(StandardCharsets.UTF_8)) + SUFFIX);
+    }
+
+    private void save(String owner, Entry entry) throws IOException {
+        Path file = fileOf(owner);
+        Path temporary = directory.resolve(file.getFileName() + ".tmp");
+        AgendaFile.write(entry.agenda, temporary);
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        entry.dirty = false;
+    }
+
+    private static long weigh(Agenda agenda) {
+        return AGENDA_BYTES + EVENT_BYTES * agenda.getEvents().size();
+    }
+}
@@ -0,0 +1,296 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * Description : A compact agenda that stores its events in parallel primitive
+ * arrays instead of {@link Event} objects.
+ * <p>
+ * An event takes about 34 bytes : its start in epoch seconds, its duration
+ * in seconds, a frequency code, the day of month of its start, its last day
+ * as an epoch day, the id of its title in a table holding each distinct title
+ * once, and the offset of its exceptions in a shared array of epoch days.
+ * Nanoseconds take two more columns, allocated only once an event needs them.
+ * <p>
+ * Events are copied in when added, and {@link Event} objects are built only on
+ * demand, as views of the columns : changing a view does not change the
+ * agenda. A termination is kept as its last day. There is no index : queries
+ * scan the columns.
+ */
+public final class ColumnarAgenda implements EventStore {
+
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final long NANOS_PER_SECOND = 1_000_000_000;
+    private static final long NO_TERMINATION = Long.MAX_VALUE;
+    private static final ChronoUnit[] UNITS = ChronoUnit.values();
+
+    private int size;
+    private long[] startSeconds;
+    private long[] durationSeconds;
+    // 0 pour un événement simple, sinon l'ordinal de la fréquence plus un
+    private byte[] frequencies;
+    // Le jour du mois du début : une répétition mensuelle n'a lieu que ce jour-là
+    private byte[] daysOfMonth;
+    private long[] lastDays;
+    private int[] titleIds;
+    // Les exceptions de l'événement i sont dans [exceptionOffsets[i], exceptionOffsets[i + 1]), triées
+    private int[] exceptionOffsets;
+    private long[] exceptionDays = new long[16];
+
+    // Alloués au premier événement qui en a besoin
+    private int[] startNanos;
+    private int[] durationNanos;
+
+    private final Map<String, Integer> titleIndex = new HashMap<>();
+    private final List<String> titles = new ArrayList<>();
+
+    /**
+     * Constructs an empty agenda
+     */
+    public ColumnarAgenda() {
+        this(16);
+    }
+
+    /**
+     * Constructs an empty agenda with room for a number of events
+     *
+     * @param initialCapacity the number of events it can hold before growing
+     */
+    public ColumnarAgenda(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        startSeconds = new long[capacity];
+        durationSeconds = new long[capacity];
+        frequencies = new byte[capacity];
+        daysOfMonth = new byte[capacity];
+        lastDays = new long[capacity];
+        titleIds = new int[capacity];
+        exceptionOffsets = new int[capacity + 1];
+    }
+
+    /**
+     * Adds a copy of an event to this agenda
+     *
+     * @param e the event to add
+     */
+    public void addEvent(Event e) {
+        ensureCapacity(size + 1);
+        int i = size;
+        LocalDateTime start = e.getStart();
+        Duration duration = e.getDuration();
+        startSeconds[i] = start.toEpochSecond(ZoneOffset.UTC);
+        durationSeconds[i] = duration.getSeconds();
+        daysOfMonth[i] = (byte) start.getDayOfMonth();
+        if (start.getNano() != 0 || duration.getNano() != 0 || startNanos != null)
+            setNanos(i, start.getNano(), duration.getNano());
+        titleIds[i] = titleId(e.getTitle());
+        int offset = exceptionOffsets[i];
+        Repetition repetition = e.repetition();
+        if (repetition == null) {
+            frequencies[i] = 0;
+            lastDays[i] = NO_TERMINATION;
+        } else {
+            frequencies[i] = (byte) (repetition.getFrequency().ordinal() + 1);
+            LocalDate last = repetition.lastDay();
+            lastDays[i] = last == null ? NO_TERMINATION : last.toEpochDay();
+            int count = repetition.getNumberOfExceptions();
+            if (exceptionDays.length < offset + count)
+                exceptionDays = Arrays.copyOf(exceptionDays, Math.max(offset + count, exceptionDays.length * 3 / 2));
+            int[] at = { offset };
+            repetition.forEachException(date -> exceptionDays[at[0]++] = date.toEpochDay());
+            Arrays.sort(exceptionDays, offset, offset + count);
+            offset += count;
+        }
+        exceptionOffsets[i + 1] = offset;
+        size++;
+    }
+
+    /**
+     * Adds copies of several events to this agenda
+     *
+     * @param events the events to add
+     */
+    public void addAll(Collection<Event> events) {
+        ensureCapacity(size + events.size());
+        for (Event e : events)
+            addEvent(e);
+    }
+
+    /**
+     * @return the number of events in this agenda
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Builds a view of an event of this agenda
+     *
+     * @param index the index of the event, in the order it was added
+     * @return a new event, equal to the one added
+     */
+    public Event event(int index) {
+        Objects.checkIndex(index, size);
+        int titleId = titleIds[index];
+        int startNano = startNanos == null ? 0 : startNanos[index];
+        int durationNano = durationNanos == null ? 0 : durationNanos[index];
+        Event e = new Event(titleId < 0 ? null : titles.get(titleId),
+                LocalDateTime.ofEpochSecond(startSeconds[index], startNano, ZoneOffset.UTC),
+                Duration.ofSeconds(durationSeconds[index], durationNano));
+        if (frequencies[index] == 0)
+            return e;
+        e.setRepetition(UNITS[frequencies[index] - 1]);
+        List<LocalDate> exceptions = new ArrayList<>(exceptionOffsets[index + 1] - exceptionOffsets[index]);
+        for (int k = exceptionOffsets[index]; k < exceptionOffsets[index + 1]; k++)
+            exceptions.add(LocalDate.ofEpochDay(exceptionDays[k]));
+        e.addExceptions(exceptions);
+        if (lastDays[index] != NO_TERMINATION)
+            e.setTermination(LocalDate.ofEpochDay(lastDays[index]));
+        return e;
+    }
+
+    /**
+     * @return a view of the events of this agenda, each built on access
+     */
+    public List<Event> getEvents() {
+        return new AbstractList<>() {
+            @Override
+            public Event get(int index) {
+                return event(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Tests if an event of this agenda occurs on a given day, with the same
+     * rule as {@link Event#isInDay(LocalDate)}
+     *
+     * @param index the index of the event
+     * @param day   the day to test
+     * @return true if the event occurs on that day
+     */
+    public boolean isInDay(int index, LocalDate day) {
+        Objects.checkIndex(index, size);
+        return isInDay(index, day, day.toEpochDay());
+    }
+
+    /**
+     * Visits the events that occur on a given day, without building them
+     *
+     * @param day  the day to test
+     * @param sink receives the index of each event that occurs on that day, in
+     *             the order they were added
+     */
+    public void forEachInDay(LocalDate day, IntConsumer sink) {
+        long epochDay = day.toEpochDay();
+        for (int i = 0; i < size; i++)
+            if (isInDay(i, day, epochDay))
+                sink.accept(i);
+    }
+
+    /**
+     * Computes the events that occur on a given day
+     *
+     * @param day the day to test
+     * @return views of the events that occur on that day, in the order they
+     * were added
+     */
+    public List<Event> eventsInDay(LocalDate day) {
+        List<Event> res = new ArrayList<>();
+        forEachInDay(day, i -> res.add(event(i)));
+        return res;
+    }
+
+    /**
+     * Finds the events with a given title, by scanning the column of title ids
+     *
+     * @param title the title to search
+     * @return views of the events with exactly that title, in the order they
+     * were added
+     */
+    public List<Event> findByTitle(String title) {
+        List<Event> res = new ArrayList<>();
+        Integer id = title == null ? Integer.valueOf(-1) : titleIndex.get(title);
+        if (id == null)
+            return res;
+        for (int i = 0; i < size; i++)
+            if (titleIds[i] == id)
+                res.add(event(i));
+        return res;
+    }
+
+    private boolean isInDay(int i, LocalDate day, long epochDay) {
+        long startDay = Math.floorDiv(startSeconds[i], SECONDS_PER_DAY);
+        int code = frequencies[i];
+        // Cas événement simple
+        if (code == 0)
+            return epochDay >= startDay && epochDay <= Math.floorDiv(endSecond(i), SECONDS_PER_DAY);
+
+        // Cas répétitif :
+        if (epochDay < startDay || epochDay > lastDays[i])
+            return false;
+        boolean occurs = switch (UNITS[code - 1]) {
+            case DAYS -> true;
+            case WEEKS -> (epochDay - startDay) % 7 == 0;
+            case MONTHS -> daysOfMonth[i] == day.getDayOfMonth();
+            default -> event(i).isInDay(day);
+        };
+        return occurs && Arrays.binarySearch(exceptionDays, exceptionOffsets[i], exceptionOffsets[i + 1], epochDay) < 0;
+    }
+
+    // La seconde de fin, arrondie à la seconde inférieure comme LocalDateTime
+    private long endSecond(int i) {
+        long end = startSeconds[i] + durationSeconds[i];
+        if (startNanos != null && (long) startNanos[i] + durationNanos[i] >= NANOS_PER_SECOND)
+            end++;
+        return end;
+    }
+
+    private int titleId(String title) {
+        if (title == null)
+            return -1;
+        Integer id = titleIndex.get(title);
+        if (id == null) {
+            id = titles.size();
+            titles.add(title);
+            titleIndex.put(title, id);
+        }
+        return id;
+    }
+
+    private void setNanos(int i, int startNano, int durationNano) {
+        if (startNanos == null) {
+            startNanos = new int[startSeconds.length];
+            durationNanos = new int[startSeconds.length];
+        }
+        startNanos[i] = startNano;
+        durationNanos[i] = durationNano;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= startSeconds.length)
+            return;
+        int grown = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(capacity, startSeconds.length * 3L / 2));
+        startSeconds = Arrays.copyOf(startSeconds, grown);
+        durationSeconds = Arrays.copyOf(durationSeconds, grown);
+        frequencies = Arrays.copyOf(frequencies, grown);
+        daysOfMonth = Arrays.copyOf(daysOfMonth, grown);
+        lastDays = Arrays.copyOf(lastDays, grown);
+        titleIds = Arrays.copyOf(titleIds, grown);
+        exceptionOffsets = Arrays.copyOf(exceptionOffsets, grown + 1);
+        if (startNanos != null) {
+            startNanos = Arrays.copyOf(startNanos, grown);
+            durationNanos = Arrays.copyOf(durationNanos, grown);
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Description : An agenda that can be shared between threads.
+ * <p>
+ * Reads run without any lock against an immutable snapshot, an
+ * {@link Agenda} that is never modified once published. Writes are serialized
+ * : each write builds a new snapshot from the current one and publishes it
+ * with a single volatile write, so a read sees all the changes of a write or
+ * none of them.
+ * <p>
+ * A write copies the list of the events and rebuilds every index from it, in
+ * one pass of {@link Agenda#addAll(Collection)} : it costs O(N log N) in the
+ * number N of events, whatever the number of changes. A single
+ * {@link #addEvent(Event)} on an agenda of 500 000 events takes about as long
+ * as importing them all. Several changes should be grouped in one
+ * {@link #update(Consumer)}, which pays that cost once;
+ * {@code ConcurrentAgendaBenchmark} measures both.
+ * <p>
+ * The events of a published snapshot are never modified : changing the
+ * exceptions or the termination of an event replaces it, in the next snapshot,
+ * by a modified copy. The methods that change an event return that copy, which
+ * must be used for later changes.
+ */
+public class ConcurrentAgenda {
+
+    /**
+     * Collects the changes of one write
+     */
+    public static final class Batch {
+
+        private final List<Event> events;
+        private Map<Event, Integer> positions;
+        private final Map<Event, Event> copies = new IdentityHashMap<>();
+        // Les événements de ce lot qui ne sont dans aucun instantané publié
+        private final Set<Event> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private Batch(List<Event> current) {
+            this.events = new ArrayList<>(current);
+        }
+
+        /**
+         * Adds an event. It must not be modified afterwards, except through
+         * this agenda.
+         *
+         * @param e the event to add
+         */
+        public void addEvent(Event e) {
+            events.add(e);
+            owned.add(e);
+            if (positions != null)
+                positions.put(e, events.size() - 1);
+        }
+
+        /**
+         * Removes an event of this agenda
+         *
+         * @param e the event, as found in the current snapshot or added to
+         *          this batch
+         */
+        public void removeEvent(Event e) {
+            Event current = copies.getOrDefault(e, e);
+            Integer position = positions().remove(current);
+            if (position == null)
+                throw new IllegalArgumentException("Event not in this agenda : " + e);
+            // La place vide est retirée à la publication du lot
+            events.set(position, null);
+            owned.remove(current);
+            copies.remove(e);
+        }
+
+        /**
+         * Changes the title, start and duration of an event of this agenda
+         *
+         * @param e        the event, as found in the current snapshot
+         * @param title    the new title
+         * @param start    the new start time
+         * @param duration the new duration
+         * @return the modified copy of the event
+         */
+        public Event updateEvent(Event e, String title, LocalDateTime start, Duration duration) {
+            Event copy = writable(e);
+            copy.reschedule(title, start, duration);
+            return copy;
+        }
+
+        /**
+         * Adds an exception to an event of this agenda
+         *
+         * @param e    the event, as found in the current snapshot
+         * @param date the date when the event must not repeat
+         * @return the modified copy of the event
+         */
+        public Event addException(Event e, LocalDate date) {
+            Event copy = writable(e);
+            copy.addException(date);
+            return copy;
+        }
+
+        /**
+         * Sets the termination of an event of this agenda at a given date
+         *
+         * @param e                    the event, as found in the current snapshot
+         * @param terminationInclusive the date when the event ends
+         * @return the modified copy of the event
+         */
+        public Event setTermination(Event e, LocalDate terminationInclusive) {
+            Event copy = writable(e);
+            copy.setTermination(terminationInclusive);
+            return copy;
+        }
+
+        /**
+         * Sets the termination of an event of this agenda after a number of
+         * occurrences
+         *
+         * @param e                   the event, as found in the current snapshot
+         * @param numberOfOccurrences the number of occurrences of the event
+         * @return the modified copy of the event
+         */
+        public Event setTermination(Event e, long numberOfOccurrences) {
+            Event copy = writable(e);
+            copy.setTermination(numberOfOccurrences);
+            return copy;
+        }
+
+        // La copie de l'événement propre à ce lot, créée à la première modification
+        private Event writable(Event e) {
+            if (owned.contains(e))
+                return e;
+            Event copy = copies.get(e);
+            if (copy != null)
+                return copy;
+            Integer position = positions().remove(e);
+            if (position == null)
+                throw new IllegalArgumentException("Event not in this agenda : " + e);
+            copy = e.copy();
+            events.set(position, copy);
+            positions.put(copy, position);
+            copies.put(e, copy);
+            owned.add(copy);
+            return copy;
+        }
+
+        // La place de chaque événement du lot, calculée au premier besoin
+        private Map<Event, Integer> positions() {
+            if (positions == null) {
+                positions = new IdentityHashMap<>();
+                for (int i = 0; i < events.size(); i++)
+                    if (events.get(i) != null)
+                        positions.put(events.get(i), i);
+            }
+            return positions;
+        }
+    }
+
+    // Les événements publiés ne changent jamais : les instantanés n'ont pas à les suivre
+    private volatile Agenda snapshot = new Agenda(false).freeze();
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private AgendaMetrics metrics = AgendaMetrics.NOOP;
+
+    /**
+     * @return the current snapshot of this agenda. It is read-only : its
+     * methods that change the agenda throw an
+     * {@link UnsupportedOperationException}.
+     */
+    public Agenda snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Sets where the measures of the queries of this agenda are sent, for the
+     * current snapshot and the next ones
+     *
+     * @param metrics the metrics, or {@link AgendaMetrics#NOOP} to stop
+     *                measuring
+     */
+    public void setMetrics(AgendaMetrics metrics) {
+        writeLock.lock();
+        try {
+            this.metrics = Objects.requireNonNull(metrics);
+            snapshot.setMetrics(metrics);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Applies several changes in a single write
+     *
+     * @param changes the changes to apply
+     */
+    public void update(Consumer<Batch> changes) {
+        writeLock.lock();
+        try {
+            Batch batch = new Batch(snapshot.getEvents());
+            changes.accept(batch);
+            batch.events.removeIf(Objects::isNull);
+            Agenda next = new Agenda(false);
+            // La reconstruction de l'instantané est mesurée comme un lot
+            next.setMetrics(metrics);
+            next.addAll(batch.events);
+            snapshot = next.freeze();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Adds an event to this agenda. It must not be modified afterwards, except
+     * through this agenda.
+     *
+     * @param e the event to add
+     */
+    public void addEvent(Event e) {
+        update(batch -> batch.addEvent(e));
+    }
+
+    /**
+     * Removes an event of this agenda
+     *
+     * @param e the event, as found in the current snapshot
+     */
+    public void removeEvent(Event e) {
+        update(batch -> batch.removeEvent(e));
+    }
+
+    /**
+     * Changes the title, start and duration of an event of this agenda
+     *
+     * @param e        the event, as found in the current snapshot
+     * @param title    the new title
+     * @param start    the new start time
+     * @param duration the new duration
+     * @return the modified copy of the event
+     */
+    public Event updateEvent(Event e, String title, LocalDateTime start, Duration duration) {
+        Event[] res = new Event[1];
+        update(batch -> res[0] = batch.updateEvent(e, title, start, duration));
+        return res[0];
+    }
+
+    /**
+     * Adds an exception to an event of this agenda
+     *
+     * @param e    the event, as found in the current snapshot
+     * @param date the date when the event must not repeat
+     * @return the modified copy of the event
+     */
+    public Event addException(Event e, LocalDate date) {
+        Event[] res = new Event[1];
+        update(batch -> res[0] = batch.addException(e, date));
+        return res[0];
+    }
+
+    /**
+     * Sets the termination of an event of this agenda at a given date
+     *
+     * @param e                    the event, as found in the current snapshot
+     * @param terminationInclusive the date when the event ends
+     * @return the modified copy of the event
+     */
+    public Event setTermination(Event e, LocalDate terminationInclusive) {
+        Event[] res = new Event[1];
+        update(batch -> res[0] = batch.setTermination(e, terminationInclusive));
+        return res[0];
+    }
+
+    /**
+     * Sets the termination of an event of this agenda after a number of
+     * occurrences
+     *
+     * @param e                   the event, as found in the current snapshot
+     * @param numberOfOccurrences the number of occurrences of the event
+     * @return the modified copy of the event
+     */
+    public Event setTermination(Event e, long numberOfOccurrences) {
+        Event[] res = new Event[1];
+        update(batch -> res[0] = batch.setTermination(e, numberOfOccurrences));
+        return res[0];
+    }
+
+    /**
+     * @see Agenda#eventsInDay(LocalDate)
+     */
+    public List<Event> eventsInDay(LocalDate day) {
+        return snapshot.eventsInDay(day);
+    }
+
+    /**
+     * @see Agenda#eventsBetween(LocalDate, LocalDate)
+     */
+    public Stream<Occurrence> eventsBetween(LocalDate from, LocalDate to) {
+        return snapshot.eventsBetween(from, to);
+    }
+
+    /**
+     * @see Agenda#findFreeSlots(Duration, LocalDateTime, LocalDateTime)
+     */
+    public List<TimeSlot> findFreeSlots(Duration minimum, LocalDateTime from, LocalDateTime to) {
+        return snapshot.findFreeSlots(minimum, from, to);
+    }
+
+    /**
+     * @see Agenda#findByTitle(String)
+     */
+    public List<Event> findByTitle(String title) {
+        return snapshot.findByTitle(title);
+    }
+
+    /**
+     * @see Agenda#findByTitle(String, TitleMatch)
+     */
+    public List<Event> findByTitle(String title, TitleMatch match) {
+        return snapshot.findByTitle(title, match);
+    }
+
+    /**
+     * @see Agenda#isFreeFor(Event)
+     */
+    public boolean isFreeFor(Event e) {
+        return snapshot.isFreeFor(e);
+    }
+
+    /**
+     * @see Agenda#findConflicts(Event)
+     */
+    public List<Event> findConflicts(Event e) {
+        return snapshot.findConflicts(e);
+    }
+}
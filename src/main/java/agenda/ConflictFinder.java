@@ -0,0 +1,149 @@
+package agenda;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Description : Finds the events of an {@link Agenda} that overlap candidate
+ * events, repeating events included.
+ * <p>
+ * A candidate is considered on its own span [start, start + duration] : if it
+ * repeats, only its first occurrence is checked. Intervals that only touch do
+ * not overlap.
+ */
+final class ConflictFinder {
+
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    private final IntervalTree spans;
+    private final RecurrenceIndex recurrences;
+
+    ConflictFinder(IntervalTree spans, RecurrenceIndex recurrences) {
+        this.spans = spans;
+        this.recurrences = recurrences;
+    }
+
+    /**
+     * Finds the events that overlap a candidate, in O(log N + k) for the
+     * non-repeating ones
+     *
+     * @param candidate the event to test
+     * @return the conflicting events, non-repeating ones first
+     */
+    List<Event> conflictsOf(Event candidate) {
+        Set<Event> res = new LinkedHashSet<>();
+        spans.query(candidate.startEpochSecond(), candidate.endEpochSecond(), other -> {
+            if (overlaps(candidate, other))
+                res.add(other);
+        });
+        addRepeatingConflicts(candidate, res);
+        return new ArrayList<>(res);
+    }
+
+    /**
+     * Finds the conflicts of several candidates in a single sweep-line pass over
+     * the non-repeating events of their overall window. The candidates are also
+     * checked against each other.
+     *
+     * @param candidates the events to test
+     * @return for each conflicting candidate, in the order of the collection,
+     * the events it overlaps
+     */
+    Map<Event, List<Event>> conflictsOf(Collection<Event> candidates) {
+        Map<Event, Set<Event>> found = new IdentityHashMap<>();
+        if (!candidates.isEmpty()) {
+            List<Event> sorted = new ArrayList<>(candidates);
+            sorted.sort(Comparator.comparing(Event::getStart));
+            long windowStart = sorted.get(0).startEpochSecond();
+            long windowEnd = Long.MIN_VALUE;
+            for (Event c : sorted)
+                windowEnd = Math.max(windowEnd, c.endEpochSecond());
+            // La requête sur l'arbre rend les événements stockés triés par début
+            List<Event> stored = new ArrayList<>();
+            spans.query(windowStart, windowEnd, stored::add);
+            sweep(sorted, stored, found);
+            for (Event c : sorted)
+                addRepeatingConflicts(c, found.computeIfAbsent(c, k -> new LinkedHashSet<>()));
+        }
+        Map<Event, List<Event>> res = new LinkedHashMap<>();
+        for (Event c : candidates) {
+            Set<Event> conflicts = found.get(c);
+            if (conflicts != null && !conflicts.isEmpty())
+                res.put(c, new ArrayList<>(conflicts));
+        }
+        return res;
+    }
+
+    /**
+     * Walks the candidates and the stored events in ascending order of start,
+     * keeping the intervals still open in two heaps ordered by end
+     */
+    private static void sweep(List<Event> candidates, List<Event> stored, Map<Event, Set<Event>> found) {
+        Comparator<Event> byEnd = Comparator.comparing(Event::end);
+        PriorityQueue<Event> openCandidates = new PriorityQueue<>(byEnd);
+        PriorityQueue<Event> openStored = new PriorityQueue<>(byEnd);
+        int c = 0;
+        int s = 0;
+        // Après le dernier candidat, les événements stockés peuvent encore chevaucher les candidats ouverts
+        while (c < candidates.size() || (s < stored.size() && !openCandidates.isEmpty())) {
+            boolean candidateNext = c < candidates.size() && (s == stored.size()
+                    || !stored.get(s).getStart().isBefore(candidates.get(c).getStart()));
+            Event current = candidateNext ? candidates.get(c++) : stored.get(s++);
+            close(openCandidates, current.getStart());
+            close(openStored, current.getStart());
+            for (Event open : openCandidates) {
+                if (overlaps(open, current)) {
+                    record(open, current, found);
+                    // Un conflit entre deux candidats est signalé pour chacun d'eux
+                    if (candidateNext)
+                        record(current, open, found);
+                }
+            }
+            if (candidateNext) {
+                for (Event open : openStored) {
+                    if (overlaps(current, open))
+                        record(current, open, found);
+                }
+                openCandidates.add(current);
+            } else
+                openStored.add(current);
+        }
+    }
+
+    // Retire les intervalles qui se terminent au plus tard à l'instant donné
+    private static void close(PriorityQueue<Event> open, LocalDateTime now) {
+        while (!open.isEmpty() && !open.peek().end().isAfter(now))
+            open.poll();
+    }
+
+    private static boolean overlaps(Event a, Event b) {
+        return a != b && Event.overlaps(a.getStart(), a.end(), b.getStart(), b.end());
+    }
+
+    private static void record(Event candidate, Event other, Map<Event, Set<Event>> found) {
+        found.computeIfAbsent(candidate, k -> new LinkedHashSet<>()).add(other);
+    }
+
+    /**
+     * Adds the repeating events that have an occurrence overlapping a candidate.
+     * Only the days from which an occurrence can reach the candidate are tested,
+     * through the buckets of the recurrence index.
+     */
+    private void addRepeatingConflicts(Event candidate, Set<Event> res) {
+        if (recurrences.size() == 0)
+            return;
+        long first = Math.floorDiv(candidate.startEpochSecond(), SECONDS_PER_DAY) - recurrences.maxSpanDays();
+        long last = Math.floorDiv(candidate.endEpochSecond(), SECONDS_PER_DAY);
+        for (long d = first; d <= last; d++) {
+            LocalDate day = LocalDate.ofEpochDay(d);
+            recurrences.forEachCandidate(day, other -> {
+                if (other == candidate || res.contains(other) || !other.isInDay(day))
+                    return;
+                LocalDateTime start = day.atTime(other.getStart().toLocalTime());
+                if (Event.overlaps(candidate.getStart(), candidate.end(), start, start.plus(other.getDuration())))
+                    res.add(other);
+            });
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package agenda;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Description : Remembers the events of the last days queried on an
+ * {@link Agenda}, in least-recently-used order. The agenda drops the days a
+ * change may affect. Queries may come from several threads, for instance on
+ * the snapshots of a {@link ConcurrentAgenda}.
+ */
+final class DayCache {
+
+    private final int capacity;
+    private final LinkedHashMap<LocalDate, List<Event>> days;
+    private long hits;
+    private long misses;
+    private long invalidations;
+
+    /**
+     * @param capacity the number of days kept, at least 1
+     */
+    DayCache(int capacity) {
+        this.capacity = capacity;
+        this.days = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LocalDate, List<Event>> eldest) {
+                return size() > DayCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @param day the day queried
+     * @return the events of that day, or null if they are not known
+     */
+    synchronized List<Event> get(LocalDate day) {
+        List<Event> events = days.get(day);
+        if (events == null)
+            misses++;
+        else
+            hits++;
+        return events;
+    }
+
+    /**
+     * @param day    the day queried
+     * @param events the events of that day, a list that is never modified
+     */
+    synchronized void put(LocalDate day, List<Event> events) {
+        days.put(day, events);
+    }
+
+    /**
+     * Forgets a day
+     *
+     * @param day the day a change may affect
+     */
+    synchronized void invalidate(LocalDate day) {
+        if (days.remove(day) != null)
+            invalidations++;
+    }
+
+    /**
+     * Forgets the days a change may affect
+     *
+     * @param affected tests if a change may affect a day
+     */
+    synchronized void invalidateIf(Predicate<LocalDate> affected) {
+        for (Iterator<LocalDate> it = days.keySet().iterator(); it.hasNext(); ) {
+            if (affected.test(it.next())) {
+                it.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    /**
+     * Forgets all the days
+     */
+    synchronized void invalidateAll() {
+        invalidations += days.size();
+        days.clear();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    synchronized boolean isEmpty() {
+        return days.isEmpty();
+    }
+
+    synchronized Agenda.DayCacheStats stats() {
+        return new Agenda.DayCacheStats(hits, misses, invalidations, days.size());
+    }
+}
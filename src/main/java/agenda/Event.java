@@ -2,6 +2,16 @@ package agenda;
 
 import java.time.*;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class Event {
 
@@ -20,6 +30,11 @@ public class Event {
      */
     private Duration myDuration;
 
+    /**
+     * The end time of the event, derived from its start and duration
+     */
+    private LocalDateTime myEnd;
+
     /**
      * Constructs an event
      *
@@ -29,10 +44,73 @@ public class Event {
      */
     private Repetition repetition;
 
+    // Valeurs dérivées du début et de la durée, pour tester les jours sans allocation
+    private long startEpochDay;
+    private long endEpochDay;
+    private long startEpochSecond;
+    private long endEpochSecond;
+
+    /**
+     * The last day an occurrence can fall on, as an epoch day
+     */
+    private long lastEpochDay = Long.MAX_VALUE;
+
+    /**
+     * The agendas to notify when this event changes, null if none
+     */
+    private List<Agenda> observers;
+
     public Event(String title, LocalDateTime start, Duration duration) {
         this.myTitle = title;
+        schedule(start, duration);
+    }
+
+    private void schedule(LocalDateTime start, Duration duration) {
         this.myStart = start;
         this.myDuration = duration;
+        this.myEnd = start.plus(duration);
+        this.startEpochDay = start.toLocalDate().toEpochDay();
+        this.endEpochDay = myEnd.toLocalDate().toEpochDay();
+        this.startEpochSecond = start.toEpochSecond(ZoneOffset.UTC);
+        this.endEpochSecond = myEnd.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Changes the title, start and duration of this event. A repetition keeps
+     * its frequency, its exceptions and its termination, a number of
+     * occurrences or a date, now counted from the new start.
+     *
+     * @param title    the new title
+     * @param start    the new start time
+     * @param duration the new duration
+     */
+    void reschedule(String title, LocalDateTime start, Duration duration) {
+        String previousTitle = myTitle;
+        LocalDateTime previousStart = myStart;
+        this.myTitle = title;
+        schedule(start, duration);
+        if (repetition != null) {
+            // Les exceptions sont rangées par index depuis le début : la répétition est reconstruite
+            Repetition previous = repetition;
+            repetition = new Repetition(previous.rule(), start.toLocalDate());
+            previous.forEachException(repetition::addException);
+            LocalDate last = repetition.lastDay();
+            lastEpochDay = last == null ? Long.MAX_VALUE : last.toEpochDay();
+        }
+        if (observers != null)
+            observers.forEach(a -> a.onEventUpdated(this, previousTitle, previousStart));
+    }
+
+    /**
+     * @return a copy of this event, with its own repetition and exceptions
+     */
+    Event copy() {
+        Event res = new Event(myTitle, myStart, myDuration);
+        if (repetition != null) {
+            res.repetition = repetition.copy();
+            res.lastEpochDay = lastEpochDay;
+        }
+        return res;
     }
 
     public boolean hasRepetition() {
@@ -40,42 +118,142 @@ public class Event {
     }
 
     public void setRepetition(ChronoUnit frequency) {
-        // TODO : implémenter cette méthode
-        this.repetition = new Repetition(frequency);
+        ChronoUnit previous = getFrequency();
+        this.repetition = new Repetition(frequency, myStart.toLocalDate());
+        this.lastEpochDay = Long.MAX_VALUE;
+        if (observers != null)
+            observers.forEach(a -> a.onRepetitionChanged(this, previous));
+    }
+
+    /**
+     * @return the shared rule of the repetition of this event, or null if it
+     * does not repeat
+     */
+    public RecurrenceRule getRecurrenceRule() {
+        return repetition == null ? null : repetition.rule();
+    }
+
+    /**
+     * @return the frequency of the repetition of this event, or null if it
+     * does not repeat
+     */
+    public ChronoUnit getFrequency() {
+        return repetition == null ? null : repetition.getFrequency();
     }
 
     public void addException(LocalDate date) {
-        // TODO : implémenter cette méthode
-        if (repetition != null)
-            repetition.addException(date);
+        if (repetition == null)
+            return;
+        repetition.addException(date);
+        if (observers != null)
+            observers.forEach(a -> a.onExceptionAdded(this, date));
+    }
+
+    /**
+     * Adds several exceptions at once
+     *
+     * @param dates the dates when this event must not repeat
+     */
+    public void addExceptions(Collection<LocalDate> dates) {
+        if (repetition == null)
+            return;
+        repetition.addExceptions(dates);
+        if (observers != null)
+            for (LocalDate date : dates)
+                observers.forEach(a -> a.onExceptionAdded(this, date));
+    }
+
+    /**
+     * Removes an exception
+     *
+     * @param date a date when this event must repeat again
+     * @return true if that date was an exception
+     */
+    public boolean removeException(LocalDate date) {
+        if (repetition == null || !repetition.removeException(date))
+            return false;
+        if (observers != null)
+            observers.forEach(a -> a.onExceptionRemoved(this, date));
+        return true;
+    }
+
+    /**
+     * Removes several exceptions at once
+     *
+     * @param dates the dates when this event must repeat again
+     */
+    public void removeExceptions(Collection<LocalDate> dates) {
+        for (LocalDate date : dates)
+            removeException(date);
     }
 
     public void setTermination(LocalDate terminationInclusive) {
-        // TODO : implémenter cette méthode
         if (repetition != null)
-            repetition.setTermination(
-                    new Termination(myStart.toLocalDate(), repetition.getFrequency(), terminationInclusive));
+            terminate(RecurrenceRule.of(repetition.getFrequency(), terminationInclusive));
     }
 
     public void setTermination(long numberOfOccurrences) {
-        // TODO : implémenter cette méthode
         if (repetition != null)
-            repetition.setTermination(
-                    new Termination(myStart.toLocalDate(), repetition.getFrequency(), numberOfOccurrences));
+            terminate(RecurrenceRule.of(repetition.getFrequency(), numberOfOccurrences));
+    }
+
+    private void terminate(RecurrenceRule rule) {
+        repetition.setRule(rule);
+        lastEpochDay = repetition.lastDay().toEpochDay();
+        if (observers != null)
+            observers.forEach(a -> a.onTerminationChanged(this));
+    }
+
+    /**
+     * Registers an agenda to notify when this event changes
+     *
+     * @param agenda the agenda holding this event
+     */
+    void observe(Agenda agenda) {
+        if (observers == null)
+            observers = new ArrayList<>(1);
+        observers.add(agenda);
+    }
+
+    /**
+     * Stops notifying an agenda of the changes of this event
+     *
+     * @param agenda the agenda that no longer holds this event
+     */
+    void unobserve(Agenda agenda) {
+        if (observers != null && observers.remove(agenda) && observers.isEmpty())
+            observers = null;
     }
 
     public int getNumberOfOccurrences() {
-        // TODO : implémenter cette méthode
-        if (repetition == null || repetition.getTermination() == null)
+        if (repetition == null || !repetition.rule().isBounded())
             return Integer.MAX_VALUE; // never ending
-        return (int) repetition.getTermination().numberOfOccurrences();
+        return (int) repetition.rule().numberOfOccurrences(myStart.toLocalDate());
+    }
+
+    /**
+     * Counts the days this event actually occurs on : its occurrences up to
+     * its termination, without its exceptions, nor the missing days of
+     * shorter months for a monthly repetition
+     *
+     * @return the number of occurrences that take place, 1 if this event does
+     * not repeat, Long.MAX_VALUE if it repeats without end
+     */
+    public long getEffectiveNumberOfOccurrences() {
+        return repetition == null ? 1 : repetition.effectiveNumberOfOccurrences();
     }
 
     public LocalDate getTerminationDate() {
-        // TODO : implémenter cette méthode
-        if (repetition == null || repetition.getTermination() == null)
+        if (repetition == null)
             return null;
-        return repetition.getTermination().terminationDateInclusive();
+        return repetition.lastDay();
+    }
+
+    /**
+     * @return the repetition of this event, or null if it does not repeat
+     */
+    Repetition repetition() {
+        return repetition;
     }
 
     /**
@@ -85,38 +263,146 @@ public class Event {
      * @return true if the event occurs on that day, false otherwise
      */
     public boolean isInDay(LocalDate aDay) {
-        // TODO : implémenter cette méthode
+        long day = aDay.toEpochDay();
         // Cas événement simple
-        if (repetition == null) {
-            LocalDate startDay = myStart.toLocalDate();
-            LocalDate endDay = myStart.plus(myDuration).toLocalDate();
+        if (repetition == null)
+            return day >= startEpochDay && day <= endEpochDay;
 
-            return !aDay.isBefore(startDay) && !aDay.isAfter(endDay);
+        // Cas répétitif :
+        if (day < startEpochDay || day > lastEpochDay)
+            return false;
+        long index = repetition.occurrenceIndex(aDay);
+        return index >= 0 && !repetition.isExceptionAt(index);
+    }
+
+    /**
+     * Computes lazily the starts of the occurrences of this event in a range of
+     * days, with the same rule as {@link #isInDay(LocalDate)}. The first
+     * occurrence is found by arithmetic on the frequency, without stepping
+     * through the earlier ones.
+     *
+     * @param from the first day of the range (inclusive)
+     * @param to   the last day of the range (inclusive), or null for no end
+     * @return the starts of the occurrences in that range, in ascending order
+     */
+    Iterator<LocalDateTime> occurrenceStarts(LocalDate from, LocalDate to) {
+        if (repetition == null) {
+            boolean overlaps = (to == null || to.toEpochDay() >= startEpochDay) && from.toEpochDay() <= endEpochDay;
+            return overlaps ? Collections.singletonList(myStart).iterator() : Collections.emptyIterator();
         }
+        return new OccurrenceIterator(from, to);
+    }
 
-        // Cas répétitif :
-        LocalDate startDate = myStart.toLocalDate();
+    /**
+     * Computes lazily all the occurrences of this event. The stream is
+     * infinite if the event repeats without termination.
+     *
+     * @return the occurrences of this event, in ascending order of start
+     */
+    public Stream<Occurrence> occurrences() {
+        return occurrences(myStart.toLocalDate(), null);
+    }
 
-        if (aDay.isBefore(startDate))
-            return false;
+    /**
+     * Computes lazily the occurrences of this event in a range of days. An
+     * occurrence is in the range if it occurs on one of its days, as decided
+     * by {@link #isInDay(LocalDate)}.
+     *
+     * @param from the first day of the range (inclusive)
+     * @param to   the last day of the range (inclusive)
+     * @return the occurrences in that range, in ascending order of start
+     */
+    public Stream<Occurrence> occurrencesBetween(LocalDate from, LocalDate to) {
+        if (to.isBefore(from))
+            throw new IllegalArgumentException("Range ends before it starts : " + from + " > " + to);
+        return occurrences(from, to);
+    }
 
-        if (repetition.isException(aDay))
-            return false;
+    /**
+     * Finds the first occurrence of this event on a day or later, skipping
+     * directly to it
+     *
+     * @param day the first day to consider
+     * @return the first occurrence that occurs on that day or later, or null
+     * if there is none
+     */
+    public Occurrence nextOccurrenceOnOrAfter(LocalDate day) {
+        Iterator<LocalDateTime> starts = occurrenceStarts(day, null);
+        return starts.hasNext() ? new Occurrence(this, starts.next()) : null;
+    }
 
-        ChronoUnit freq = repetition.getFrequency();
-        long steps = freq.between(startDate, aDay);
+    private Stream<Occurrence> occurrences(LocalDate from, LocalDate to) {
+        Iterator<LocalDateTime> starts = occurrenceStarts(from, to);
+        Iterator<Occurrence> res = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return starts.hasNext();
+            }
 
-        if (!startDate.plus(steps, freq).equals(aDay))
-            return false;
+            @Override
+            public Occurrence next() {
+                return new Occurrence(Event.this, starts.next());
+            }
+        };
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(res, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Iterates over the occurrences of a repeating event in a range of days
+     */
+    private final class OccurrenceIterator implements Iterator<LocalDateTime> {
+        private final LocalDate startDate = myStart.toLocalDate();
+        private final ChronoUnit frequency = repetition.getFrequency();
+        private final LocalDate last;
+        private long index;
+        private LocalDate next;
 
-        if (repetition.getTermination() != null) {
-            Termination t = repetition.getTermination();
+        OccurrenceIterator(LocalDate from, LocalDate to) {
+            LocalDate lastDay = repetition.lastDay();
+            LocalDate end = to == null ? LocalDate.MAX : to;
+            last = lastDay != null && lastDay.isBefore(end) ? lastDay : end;
+            if (from.isAfter(startDate)) {
+                index = frequency.between(startDate, from);
+                if (startDate.plus(index, frequency).isBefore(from))
+                    index++;
+            }
+            advance();
+        }
 
-            if (aDay.isAfter(t.terminationDateInclusive()))
-                return false;
+        private void advance() {
+            next = null;
+            while (true) {
+                LocalDate candidate;
+                try {
+                    candidate = startDate.plus(index++, frequency);
+                } catch (DateTimeException ex) {
+                    // Au-delà de LocalDate.MAX : plus aucune occurrence
+                    return;
+                }
+                if (candidate.isAfter(last))
+                    return;
+                // Écarte les exceptions, et les fins de mois raccourcies pour MONTHS
+                if (isInDay(candidate)) {
+                    next = candidate;
+                    return;
+                }
+            }
         }
 
-        return true;
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public LocalDateTime next() {
+            if (next == null)
+                throw new NoSuchElementException();
+            LocalDateTime res = next.atTime(myStart.toLocalTime());
+            advance();
+            return res;
+        }
     }
 
     /**
@@ -140,6 +426,49 @@ public class Event {
         return myDuration;
     }
 
+    /**
+     * @return the end time of this event (of its first occurrence if it repeats)
+     */
+    LocalDateTime end() {
+        return myEnd;
+    }
+
+    /**
+     * @return the number of days after its start day that an occurrence of this
+     * event spills over
+     */
+    long spanDays() {
+        return endEpochDay - startEpochDay;
+    }
+
+    /**
+     * Tests if two time intervals overlap. Intervals that only touch, one ending
+     * when the other starts, do not overlap.
+     *
+     * @param start1 the start of the first interval
+     * @param end1   the end of the first interval
+     * @param start2 the start of the second interval
+     * @param end2   the end of the second interval
+     * @return true if the intervals overlap
+     */
+    static boolean overlaps(LocalDateTime start1, LocalDateTime end1, LocalDateTime start2, LocalDateTime end2) {
+        return end1.isAfter(start2) && end2.isAfter(start1);
+    }
+
+    /**
+     * @return the start of this event, in seconds since the epoch (local time)
+     */
+    long startEpochSecond() {
+        return startEpochSecond;
+    }
+
+    /**
+     * @return the end of this event, in seconds since the epoch (local time)
+     */
+    long endEpochSecond() {
+        return endEpochSecond;
+    }
+
     @Override
     public String toString() {
         return "Event{title='%s', start=%s, duration=%s}".formatted(myTitle, myStart, myDuration);
@@ -0,0 +1,185 @@
+package agenda;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Description : The fixed-width binary record of an event, shared by the
+ * formats that store events outside of {@link Event} objects. A record takes
+ * {@link #RECORD_SIZE} bytes :
+ * <UL>
+ * <LI>0 : start, in seconds since the epoch (long), then its nanoseconds (int)</LI>
+ * <LI>12 : id of the title in a string table (int), -1 for no title</LI>
+ * <LI>16 : duration, in seconds (long), then its nanoseconds (int)</LI>
+ * <LI>28 : frequency (byte), 0 for no repetition, else the ordinal of the
+ * ChronoUnit plus one</LI>
+ * <LI>29 : termination kind (byte), one of {@link #NO_TERMINATION},
+ * {@link #TERMINATION_DATE}, {@link #TERMINATION_COUNT}</LI>
+ * <LI>30 : day of month of the start (byte), so that a monthly repetition is
+ * tested without building a date</LI>
+ * <LI>32 : termination, an epoch day or a number of occurrences (long)</LI>
+ * <LI>40 : index of the first exception in an exception table (int), then the
+ * number of exceptions (int)</LI>
+ * </UL>
+ */
+final class EventLayout {
+
+    static final int RECORD_SIZE = 48;
+
+    static final byte NO_TERMINATION = 0;
+    static final byte TERMINATION_DATE = 1;
+    static final byte TERMINATION_COUNT = 2;
+
+    private static final int START_SECONDS = 0;
+    private static final int START_NANOS = 8;
+    private static final int TITLE = 12;
+    private static final int DURATION_SECONDS = 16;
+    private static final int DURATION_NANOS = 24;
+    private static final int FREQUENCY = 28;
+    private static final int TERMINATION_KIND = 29;
+    private static final int DAY_OF_MONTH = 30;
+    private static final int TERMINATION = 32;
+    private static final int EXCEPTIONS_OFFSET = 40;
+    private static final int EXCEPTIONS_COUNT = 44;
+
+    private static final ChronoUnit[] UNITS = ChronoUnit.values();
+
+    private EventLayout() {
+    }
+
+    /**
+     * Writes the record of an event
+     *
+     * @param buffer           the buffer to write to
+     * @param at               the position of the record
+     * @param e                the event
+     * @param titleId          the id of its title, -1 for no title
+     * @param exceptionsOffset the index of its first exception
+     * @param exceptionsCount  the number of its exceptions
+     */
+    static void write(ByteBuffer buffer, int at, Event e, int titleId, int exceptionsOffset, int exceptionsCount) {
+        buffer.putLong(at + START_SECONDS, e.getStart().toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(at + START_NANOS, e.getStart().getNano());
+        buffer.putInt(at + TITLE, titleId);
+        buffer.putLong(at + DURATION_SECONDS, e.getDuration().getSeconds());
+        buffer.putInt(at + DURATION_NANOS, e.getDuration().getNano());
+        Repetition repetition = e.repetition();
+        buffer.put(at + FREQUENCY, repetition == null ? 0 : (byte) (repetition.getFrequency().ordinal() + 1));
+        buffer.put(at + DAY_OF_MONTH, (byte) e.getStart().getDayOfMonth());
+        RecurrenceRule rule = repetition == null ? null : repetition.rule();
+        if (rule == null || !rule.isBounded()) {
+            buffer.put(at + TERMINATION_KIND, NO_TERMINATION);
+            buffer.putLong(at + TERMINATION, 0);
+        } else if (rule.isCountBounded()) {
+            buffer.put(at + TERMINATION_KIND, TERMINATION_COUNT);
+            buffer.putLong(at + TERMINATION, rule.getCount());
+        } else {
+            buffer.put(at + TERMINATION_KIND, TERMINATION_DATE);
+            buffer.putLong(at + TERMINATION, rule.getUntil().toEpochDay());
+        }
+        buffer.putInt(at + EXCEPTIONS_OFFSET, exceptionsOffset);
+        buffer.putInt(at + EXCEPTIONS_COUNT, exceptionsCount);
+    }
+
+    static LocalDateTime start(ByteBuffer buffer, int at) {
+        return LocalDateTime.ofEpochSecond(buffer.getLong(at + START_SECONDS), buffer.getInt(at + START_NANOS),
+                ZoneOffset.UTC);
+    }
+
+    static long startEpochSecond(ByteBuffer buffer, int at) {
+        return buffer.getLong(at + START_SECONDS);
+    }
+
+    static int startNano(ByteBuffer buffer, int at) {
+        return buffer.getInt(at + START_NANOS);
+    }
+
+    static int titleId(ByteBuffer buffer, int at) {
+        return buffer.getInt(at + TITLE);
+    }
+
+    static Duration duration(ByteBuffer buffer, int at) {
+        return Duration.ofSeconds(buffer.getLong(at + DURATION_SECONDS), buffer.getInt(at + DURATION_NANOS));
+    }
+
+    static long durationSeconds(ByteBuffer buffer, int at) {
+        return buffer.getLong(at + DURATION_SECONDS);
+    }
+
+    static int durationNano(ByteBuffer buffer, int at) {
+        return buffer.getInt(at + DURATION_NANOS);
+    }
+
+    /**
+     * @return the frequency of the event, or null if it does not repeat
+     */
+    static ChronoUnit frequency(ByteBuffer buffer, int at) {
+        int code = buffer.get(at + FREQUENCY);
+        return code == 0 ? null : UNITS[code - 1];
+    }
+
+    static int dayOfMonth(ByteBuffer buffer, int at) {
+        return buffer.get(at + DAY_OF_MONTH);
+    }
+
+    static byte terminationKind(ByteBuffer buffer, int at) {
+        return buffer.get(at + TERMINATION_KIND);
+    }
+
+    static long termination(ByteBuffer buffer, int at) {
+        return buffer.getLong(at + TERMINATION);
+    }
+
+    /**
+     * Replaces the termination of a record by its last day
+     *
+     * @param buffer   the buffer holding the record
+     * @param at       the position of the record
+     * @param epochDay the last day of the event
+     */
+    static void terminateAt(ByteBuffer buffer, int at, long epochDay) {
+        buffer.put(at + TERMINATION_KIND, TERMINATION_DATE);
+        buffer.putLong(at + TERMINATION, epochDay);
+    }
+
+    static int exceptionsOffset(ByteBuffer buffer, int at) {
+        return buffer.getInt(at + EXCEPTIONS_OFFSET);
+    }
+
+    static int exceptionsCount(ByteBuffer buffer, int at) {
+        return buffer.getInt(at + EXCEPTIONS_COUNT);
+    }
+
+    /**
+     * Builds the event described by a record
+     *
+     * @param buffer     the buffer holding the record
+     * @param at         the position of the record
+     * @param title      the title of the event
+     * @param exceptions the buffer holding the exception table, as epoch days
+     * @param base       the position of the exception table in that buffer
+     * @return a new event
+     */
+    static Event read(ByteBuffer buffer, int at, String title, ByteBuffer exceptions, int base) {
+        Event e = new Event(title, start(buffer, at), duration(buffer, at));
+        ChronoUnit frequency = frequency(buffer, at);
+        if (frequency == null)
+            return e;
+        e.setRepetition(frequency);
+        int offset = exceptionsOffset(buffer, at);
+        int count = exceptionsCount(buffer, at);
+        for (int i = 0; i < count; i++)
+            e.addException(LocalDate.ofEpochDay(exceptions.getLong(base + 8 * (offset + i))));
+        switch (terminationKind(buffer, at)) {
+            case TERMINATION_DATE -> e.setTermination(LocalDate.ofEpochDay(termination(buffer, at)));
+            case TERMINATION_COUNT -> e.setTermination(termination(buffer, at));
+            default -> {
+            }
+        }
+        return e;
+    }
+}
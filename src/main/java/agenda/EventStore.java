@@ -0,0 +1,54 @@
+package agenda;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Description : Holds the events of an agenda and answers the queries every
+ * storage mode supports.
+ * <p>
+ * {@link Agenda} indexes its events by day, title and interval, and also
+ * finds conflicts and free slots. {@link ColumnarAgenda} and
+ * {@link OffHeapAgenda} trade those indexes for a compact copy of the events :
+ * they answer these queries by scanning it, in O(N), and build {@link Event}
+ * objects only for the results.
+ */
+public interface EventStore {
+
+    /**
+     * Adds an event
+     *
+     * @param e the event to add
+     */
+    void addEvent(Event e);
+
+    /**
+     * Adds several events, in the order of the collection
+     *
+     * @param events the events to add
+     */
+    void addAll(Collection<Event> events);
+
+    /**
+     * @return the events, in the order they were added
+     */
+    List<Event> getEvents();
+
+    /**
+     * Computes the events that occur on a given day
+     *
+     * @param day the day to test
+     * @return the events that occur on that day
+     */
+    List<Event> eventsInDay(LocalDate day);
+
+    /**
+     * Finds the events with a given title
+     *
+     * @param title the title to search
+     * @return the events with exactly that title, in the order they were
+     * added
+     */
+    List<Event> findByTitle(String title);
+}
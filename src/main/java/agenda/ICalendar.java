@@ -0,0 +1,445 @@
+package agenda;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Description : Reads and writes events in the iCalendar format (RFC 5545).
+ * <p>
+ * Both directions stream : a file is read line by line and each event is
+ * handed over as soon as its VEVENT ends, and events are written one at a
+ * time, so the size of a file is not limited by the heap. Only what an
+ * {@link Event} can hold is mapped : SUMMARY, DTSTART, DTEND or DURATION, an
+ * RRULE with a FREQ of DAILY, WEEKLY or MONTHLY and an optional UNTIL or
+ * COUNT, and EXDATE. Times are read as local times : a time zone or a UTC
+ * suffix is ignored. Other properties and components are skipped, and a rule
+ * that an event can not represent is rejected. iCalendar times have no
+ * fraction of a second : an event whose start or duration has one is not
+ * written, and the events after it neither.
+ */
+public final class ICalendar {
+
+    // Les lignes écrites ne dépassent pas 75 octets, hors fin de ligne
+    private static final int MAX_LINE_BYTES = 75;
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("uuuuMMdd'T'HHmmss");
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("uuuuMMdd'T'HHmmss'Z'");
+
+    private ICalendar() {
+    }
+
+    /**
+     * Reads the events of an iCalendar file into an agenda
+     *
+     * @param file   the file to read
+     * @param agenda the agenda receiving the events
+     * @return the number of events read
+     * @throws IOException if the file can not be read or is malformed
+     */
+    public static long read(Path file, Agenda agenda) throws IOException {
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return read(in, agenda);
+        }
+    }
+
+    /**
+     * Reads iCalendar events into an agenda. The events are added together,
+     * once the whole text is read and checked : a malformed text leaves the
+     * agenda unchanged.
+     *
+     * @param in     the text to read, left open
+     * @param agenda the agenda receiving the events
+     * @return the number of events read
+     * @throws IOException if the text can not be read or is malformed
+     */
+    public static long read(Reader in, Agenda agenda) throws IOException {
+        List<Event> read = new ArrayList<>();
+        long count = read(in, read::add);
+        agenda.addAll(read);
+        return count;
+    }
+
+    /**
+     * Reads iCalendar events one at a time
+     *
+     * @param in   the text to read, left open
+     * @param sink receives each event when its VEVENT ends
+     * @return the number of events read
+     * @throws IOException if the text can not be read or is malformed
+     */
+    public static long read(Reader in, Consumer<Event> sink) throws IOException {
+        return new Parser(in instanceof BufferedReader b ? b : new BufferedReader(in)).parse(sink);
+    }
+
+    /**
+     * Writes the events of an agenda to an iCalendar file
+     *
+     * @param agenda the agenda to save
+     * @param file   the file to write, replaced if it exists
+     * @throws IOException if the file can not be written, or an event can not
+     *                     be expressed in iCalendar
+     */
+    public static void write(Agenda agenda, Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            write(agenda.getEvents(), out);
+        }
+    }
+
+    /**
+     * Writes events as an iCalendar object
+     *
+     * @param events the events to save
+     * @param out    the text to write to, left open
+     * @throws IOException if the text can not be written, or an event can not
+     *                     be expressed in iCalendar
+     */
+    public static void write(Iterable<Event> events, Writer out) throws IOException {
+        String stamp = STAMP.format(LocalDateTime.now(ZoneOffset.UTC));
+        writeLine(out, "BEGIN:VCALENDAR");
+        writeLine(out, "VERSION:2.0");
+        writeLine(out, "PRODID:-//GL-agenda//agenda//FR");
+        long uid = 0;
+        for (Event e : events) {
+            // Tout est vérifié avant la première ligne : un événement refusé n'est pas entamé
+            if (e.getStart().getNano() != 0)
+                throw new IOException("No iCalendar time for " + e.getStart());
+            String duration = durationValue(e.getDuration());
+            Repetition repetition = e.repetition();
+            StringBuilder rule = null;
+            if (repetition != null) {
+                rule = new StringBuilder("RRULE:FREQ=").append(frequencyName(repetition.getFrequency()));
+                Termination termination = repetition.getTermination();
+                if (termination != null && termination.isCountBounded())
+                    rule.append(";COUNT=").append(termination.numberOfOccurrences());
+                else if (termination != null)
+                    rule.append(";UNTIL=").append(DATE_TIME.format(termination.terminationDateInclusive().atTime(LocalTime.MAX)));
+            }
+            writeLine(out, "BEGIN:VEVENT");
+            writeLine(out, "UID:" + uid++ + "@agenda");
+            writeLine(out, "DTSTAMP:" + stamp);
+            writeLine(out, "DTSTART:" + DATE_TIME.format(e.getStart()));
+            writeLine(out, "DURATION:" + duration);
+            if (e.getTitle() != null)
+                writeLine(out, "SUMMARY:" + escape(e.getTitle()));
+            if (rule != null) {
+                writeLine(out, rule.toString());
+                if (repetition.getNumberOfExceptions() > 0) {
+                    // Les exceptions ont le type de DTSTART : une date et l'heure de l'événement
+                    StringBuilder dates = new StringBuilder("EXDATE:");
+                    LocalTime time = e.getStart().toLocalTime();
+                    repetition.forEachException(date -> {
+                        if (dates.length() > "EXDATE:".length())
+                            dates.append(',');
+                        dates.append(DATE_TIME.format(date.atTime(time)));
+                    });
+                    writeLine(out, dates.toString());
+                }
+            }
+            writeLine(out, "END:VEVENT");
+        }
+        writeLine(out, "END:VCALENDAR");
+        out.flush();
+    }
+
+    private static String frequencyName(ChronoUnit frequency) throws IOException {
+        return switch (frequency) {
+            case DAYS -> "DAILY";
+            case WEEKS -> "WEEKLY";
+            case MONTHS -> "MONTHLY";
+            default -> throw new IOException("No iCalendar frequency for " + frequency);
+        };
+    }
+
+    // Le signe d'une durée iCalendar précède le P : Duration.toString le met dans chaque champ
+    private static String durationValue(Duration duration) throws IOException {
+        if (duration.getNano() != 0)
+            throw new IOException("No iCalendar duration for " + duration);
+        return duration.isNegative() ? "-" + duration.negated() : duration.toString();
+    }
+
+    // Les lignes longues sont repliées : la suite commence par une espace
+    private static void writeLine(Writer out, String line) throws IOException {
+        int bytes = 0;
+        for (int i = 0; i < line.length(); ) {
+            int cp = line.codePointAt(i);
+            int size = cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+            if (bytes + size > MAX_LINE_BYTES) {
+                out.write("\r\n ");
+                bytes = 1;
+            }
+            out.write(line, i, Character.charCount(cp));
+            bytes += size;
+            i += Character.charCount(cp);
+        }
+        out.write("\r\n");
+    }
+
+    private static String escape(String text) {
+        StringBuilder res = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\', ';', ',' -> res.append('\\').append(c);
+                case '\n' -> res.append("\\n");
+                case '\r' -> {
+                }
+                default -> res.append(c);
+            }
+        }
+        return res.toString();
+    }
+
+    private static String unescape(String text) {
+        if (text.indexOf('\\') < 0)
+            return text;
+        StringBuilder res = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                char next = text.charAt(++i);
+                res.append(next == 'n' || next == 'N' ? '\n' : next);
+            } else
+                res.append(c);
+        }
+        return res.toString();
+    }
+
+    /**
+     * Reads the content lines of an iCalendar text, and builds an event from
+     * the properties of each VEVENT
+     */
+    private static final class Parser {
+        private final BufferedReader in;
+        // La ligne physique suivante, déjà lue pour détecter un repli
+        private String lookahead;
+        private long lineNumber;
+
+        // L'événement en cours de lecture
+        private boolean inEvent;
+        private int nestedDepth;
+        private String summary;
+        private LocalDateTime start;
+        private boolean allDay;
+        private LocalDateTime end;
+        private Duration duration;
+        private String rule;
+        private final List<LocalDate> exceptions = new ArrayList<>();
+
+        Parser(BufferedReader in) {
+            this.in = in;
+        }
+
+        long parse(Consumer<Event> sink) throws IOException {
+            long count = 0;
+            lookahead = in.readLine();
+            String line;
+            while ((line = nextContentLine()) != null) {
+                if (line.isEmpty())
+                    continue;
+                try {
+                    if (property(line, sink))
+                        count++;
+                } catch (DateTimeException | IllegalArgumentException ex) {
+                    throw new IOException("Line " + lineNumber + " : " + ex.getMessage(), ex);
+                }
+            }
+            if (inEvent)
+                throw new IOException("Line " + lineNumber + " : VEVENT not ended");
+            return count;
+        }
+
+        // Une ligne logique : les lignes physiques qui commencent par une espace la prolongent
+        private String nextContentLine() throws IOException {
+            if (lookahead == null)
+                return null;
+            String line = lookahead;
+            lineNumber++;
+            lookahead = in.readLine();
+            if (lookahead == null || lookahead.isEmpty() || (lookahead.charAt(0) != ' ' && lookahead.charAt(0) != '\t'))
+                return line;
+            StringBuilder unfolded = new StringBuilder(line);
+            while (lookahead != null && !lookahead.isEmpty()
+                    && (lookahead.charAt(0) == ' ' || lookahead.charAt(0) == '\t')) {
+                unfolded.append(lookahead, 1, lookahead.length());
+                lineNumber++;
+                lookahead = in.readLine();
+            }
+            return unfolded.toString();
+        }
+
+        /**
+         * Handles a content line
+         *
+         * @return true if the line ended an event
+         */
+        private boolean property(String line, Consumer<Event> sink) throws IOException {
+            int colon = valueSeparator(line);
+            if (colon < 0)
+                throw new IOException("Line " + lineNumber + " : no value in " + line);
+            String head = line.substring(0, colon);
+            String value = line.substring(colon + 1);
+            int semicolon = head.indexOf(';');
+            String name = (semicolon < 0 ? head : head.substring(0, semicolon)).toUpperCase(Locale.ROOT);
+            String parameters = semicolon < 0 ? "" : head.substring(semicolon + 1).toUpperCase(Locale.ROOT);
+
+            if (name.equals("BEGIN")) {
+                if (inEvent)
+                    nestedDepth++;
+                else if (value.equalsIgnoreCase("VEVENT"))
+                    begin();
+                return false;
+            }
+            if (name.equals("END")) {
+                if (inEvent && nestedDepth > 0)
+                    nestedDepth--;
+                else if (inEvent && value.equalsIgnoreCase("VEVENT")) {
+                    sink.accept(end());
+                    return true;
+                }
+                return false;
+            }
+            // Seules les propriétés propres à l'événement, hors alarmes
+            if (!inEvent || nestedDepth > 0)
+                return false;
+            switch (name) {
+                case "SUMMARY" -> summary = unescape(value);
+                case "DTSTART" -> {
+                    allDay = isDate(parameters, value);
+                    start = dateTime(value);
+                }
+                case "DTEND" -> end = dateTime(value);
+                case "DURATION" -> duration = duration(value);
+                case "RRULE" -> rule = value;
+                case "EXDATE" -> {
+                    for (String date : value.split(","))
+                        exceptions.add(dateTime(date).toLocalDate());
+                }
+                default -> {
+                }
+            }
+            return false;
+        }
+
+        // Le premier ':' hors des valeurs de paramètres entre guillemets
+        private static int valueSeparator(String line) {
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c == '"')
+                    quoted = !quoted;
+                else if (c == ':' && !quoted)
+                    return i;
+            }
+            return -1;
+        }
+
+        private void begin() {
+            inEvent = true;
+            nestedDepth = 0;
+            summary = null;
+            start = null;
+            allDay = false;
+            end = null;
+            duration = null;
+            rule = null;
+            exceptions.clear();
+        }
+
+        private Event end() throws IOException {
+            inEvent = false;
+            if (start == null)
+                throw new IOException("Line " + lineNumber + " : VEVENT without DTSTART");
+            Duration length = duration;
+            if (length == null && end != null)
+                length = Duration.between(start, end);
+            if (length == null)
+                length = allDay ? Duration.ofDays(1) : Duration.ZERO;
+            Event e = new Event(summary, start, length);
+            if (rule != null)
+                applyRule(e);
+            return e;
+        }
+
+        private void applyRule(Event e) throws IOException {
+            ChronoUnit frequency = null;
+            LocalDate until = null;
+            long count = -1;
+            for (String part : rule.split(";")) {
+                int equals = part.indexOf('=');
+                String key = equals < 0 ? part : part.substring(0, equals).toUpperCase(Locale.ROOT);
+                String value = equals < 0 ? "" : part.substring(equals + 1);
+                switch (key) {
+                    case "FREQ" -> frequency = switch (value.toUpperCase(Locale.ROOT)) {
+                        case "DAILY" -> ChronoUnit.DAYS;
+                        case "WEEKLY" -> ChronoUnit.WEEKS;
+                        case "MONTHLY" -> ChronoUnit.MONTHS;
+                        default -> throw unsupported();
+                    };
+                    case "UNTIL" -> until = dateTime(value).toLocalDate();
+                    case "COUNT" -> count = Long.parseLong(value);
+                    case "INTERVAL" -> {
+                        if (Integer.parseInt(value) != 1)
+                            throw unsupported();
+                    }
+                    // Le premier jour de la semaine ne change rien sans BYDAY
+                    case "WKST" -> {
+                    }
+                    default -> throw unsupported();
+                }
+            }
+            if (frequency == null)
+                throw new IOException("Line " + lineNumber + " : RRULE without FREQ");
+            e.setRepetition(frequency);
+            e.addExceptions(exceptions);
+            if (until != null)
+                e.setTermination(until);
+            else if (count >= 0)
+                e.setTermination(count);
+        }
+
+        private IOException unsupported() {
+            return new IOException("Line " + lineNumber + " : unsupported RRULE " + rule);
+        }
+
+        private static boolean isDate(String parameters, String value) {
+            return parameters.contains("VALUE=DATE") && !parameters.contains("VALUE=DATE-TIME")
+                    || value.indexOf('T') < 0;
+        }
+
+        // Une DATE ou une DATE-TIME, locale, UTC ou avec un fuseau : l'heure est lue telle quelle
+        private static LocalDateTime dateTime(String value) {
+            String text = value.trim();
+            if (text.endsWith("Z") || text.endsWith("z"))
+                text = text.substring(0, text.length() - 1);
+            try {
+                return text.indexOf('T') < 0 ? LocalDate.parse(text, DATE).atStartOfDay()
+                        : LocalDateTime.parse(text, DATE_TIME);
+            } catch (DateTimeParseException ex) {
+                throw new DateTimeException("invalid date " + value, ex);
+            }
+        }
+
+        // RFC 5545 accepte les semaines, que Duration.parse ignore
+        private static Duration duration(String value) {
+            String text = value.trim().toUpperCase(Locale.ROOT);
+            boolean negative = text.startsWith("-");
+            if (negative || text.startsWith("+"))
+                text = text.substring(1);
+            Duration res;
+            if (text.endsWith("W"))
+                res = Duration.ofDays(7 * Long.parseLong(text.substring(1, text.length() - 1)));
+            else
+                res = Duration.parse(text);
+            return negative ? res.negated() : res;
+        }
+    }
+}
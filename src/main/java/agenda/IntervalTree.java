@@ -0,0 +1,420 @@
+package agenda;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Description : An augmented AVL tree over closed intervals [low, high] of
+ * epoch seconds, used by {@link Agenda} to index non-repeating events.
+ * <p>
+ * Nodes are ordered by their low bound and each node keeps the maximum high
+ * bound of its subtree, so an overlap query only descends into subtrees that
+ * can contain a match : O(log N + k) for k results. Intervals sharing a low
+ * bound are ordered by insertion, and each event knows its node, so a removal
+ * descends straight to it : O(log N).
+ */
+final class IntervalTree {
+
+    private static final class Node {
+        final long low;
+        final long high;
+        final long seq;
+        final Event event;
+        long max;
+        int height = 1;
+        Node left;
+        Node right;
+
+        Node(long low, long high, long seq, Event event) {
+            this.low = low;
+            this.high = high;
+            this.seq = seq;
+            this.event = event;
+            this.max = high;
+        }
+    }
+
+    // En dessous de cette taille, un sous-arbre est construit sur le thread courant
+    private static final int PARALLEL_BUILD_SIZE = 1 << 14;
+
+    private Node root;
+    private int size;
+    // Le nœud de chaque événement, pour les retraits
+    private final Map<Event, Node> nodes = new IdentityHashMap<>();
+    // Départage les intervalles de même borne basse, dans l'ordre d'insertion
+    private long nextSeq;
+
+    /**
+     * @return the number of intervals in this tree
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds an interval to this tree
+     *
+     * @param low   the lower bound (inclusive)
+     * @param high  the upper bound (inclusive)
+     * @param event the event covering this interval
+     */
+    void insert(long low, long high, Event event) {
+        Node added = new Node(low, high, nextSeq++, event);
+        nodes.put(event, added);
+        root = insert(root, added);
+        size++;
+    }
+
+    /**
+     * Adds several intervals to this tree. Unless the tree is much larger than
+     * the batch, the new intervals are sorted and merged with the existing
+     * ones, and the tree is rebuilt balanced in a single pass : O(N + k log k)
+     * instead of k insertions.
+     *
+     * @param events   the events to add, in insertion order
+     * @param low      gives the lower bound (inclusive) of an event
+     * @param high     gives the upper bound (inclusive) of an event
+     * @param parallel true to sort and build on the common fork-join pool
+     */
+    void insertAll(List<Event> events, ToLongFunction<Event> low, ToLongFunction<Event> high, boolean parallel) {
+        if (events.size() < size >>> 4) {
+            for (Event e : events)
+                insert(low.applyAsLong(e), high.applyAsLong(e), e);
+            return;
+        }
+        Node[] added = new Node[events.size()];
+        for (int i = 0; i < added.length; i++) {
+            Event e = events.get(i);
+            added[i] = new Node(low.applyAsLong(e), high.applyAsLong(e), nextSeq++, e);
+            nodes.put(e, added[i]);
+        }
+        sort(added, parallel);
+
+        // Fusion avec les nœuds existants, parcourus dans l'ordre
+        Node[] existing = new Node[size];
+        int[] count = { 0 };
+        inOrder(root, existing, count);
+        Node[] all = new Node[existing.length + added.length];
+        int i = 0, j = 0, k = 0;
+        while (i < existing.length && j < added.length)
+            all[k++] = compare(existing[i], added[j]) <= 0 ? existing[i++] : added[j++];
+        while (i < existing.length)
+            all[k++] = existing[i++];
+        while (j < added.length)
+            all[k++] = added[j++];
+
+        if (parallel && all.length > PARALLEL_BUILD_SIZE) {
+            Node[] res = new Node[1];
+            ForkJoinTask.invokeAll(new Build(all, 0, all.length - 1, res, 0));
+            root = res[0];
+        } else
+            root = build(all, 0, all.length - 1);
+        size = all.length;
+    }
+
+    /**
+     * Sorts new nodes, numbered in insertion order, by low bound then number.
+     * When the spread of the low bounds leaves room for the index of each node
+     * in a long, the nodes are sorted through these packed keys : a sort of
+     * primitives is several times faster than one of objects.
+     */
+    private static void sort(Node[] nodes, boolean parallel) {
+        if (nodes.length == 0)
+            return;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (Node n : nodes) {
+            min = Math.min(min, n.low);
+            max = Math.max(max, n.low);
+        }
+        int indexBits = 64 - Long.numberOfLeadingZeros(nodes.length - 1L);
+        long spread = max - min;
+        if (spread < 0 || 64 - Long.numberOfLeadingZeros(spread) + indexBits > 63) {
+            if (parallel)
+                Arrays.parallelSort(nodes, IntervalTree::compare);
+            else
+                Arrays.sort(nodes, IntervalTree::compare);
+            return;
+        }
+        // L'index départage les bornes égales, dans l'ordre d'insertion
+        long[] keys = new long[nodes.length];
+        for (int i = 0; i < nodes.length; i++)
+            keys[i] = (nodes[i].low - min) << indexBits | i;
+        if (parallel)
+            Arrays.parallelSort(keys);
+        else
+            Arrays.sort(keys);
+        Node[] unsorted = nodes.clone();
+        long mask = (1L << indexBits) - 1;
+        for (int i = 0; i < keys.length; i++)
+            nodes[i] = unsorted[(int) (keys[i] & mask)];
+    }
+
+    private static void inOrder(Node n, Node[] res, int[] count) {
+        if (n == null)
+            return;
+        inOrder(n.left, res, count);
+        res[count[0]++] = n;
+        inOrder(n.right, res, count);
+    }
+
+    // Un arbre parfaitement équilibré sur nodes[from..to], déjà triés
+    private static Node build(Node[] nodes, int from, int to) {
+        if (from > to)
+            return null;
+        int mid = (from + to) >>> 1;
+        Node n = nodes[mid];
+        n.left = build(nodes, from, mid - 1);
+        n.right = build(nodes, mid + 1, to);
+        update(n);
+        return n;
+    }
+
+    /**
+     * Builds the two halves of a large subtree in parallel
+     */
+    @SuppressWarnings("serial")
+    private static final class Build extends RecursiveAction {
+        private final Node[] nodes;
+        private final int from;
+        private final int to;
+        private final Node[] res;
+        private final int slot;
+
+        Build(Node[] nodes, int from, int to, Node[] res, int slot) {
+            this.nodes = nodes;
+            this.from = from;
+            this.to = to;
+            this.res = res;
+            this.slot = slot;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < PARALLEL_BUILD_SIZE) {
+                res[slot] = build(nodes, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            Node[] children = new Node[2];
+            invokeAll(new Build(nodes, from, mid - 1, children, 0), new Build(nodes, mid + 1, to, children, 1));
+            Node n = nodes[mid];
+            n.left = children[0];
+            n.right = children[1];
+            update(n);
+            res[slot] = n;
+        }
+    }
+
+    /**
+     * Removes an interval from this tree, in O(log N)
+     *
+     * @param event the event covering the interval, as inserted
+     * @return true if the interval was in this tree
+     */
+    boolean remove(Event event) {
+        Node removed = nodes.remove(event);
+        if (removed == null)
+            return false;
+        root = remove(root, removed);
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes all the intervals of this tree
+     */
+    void clear() {
+        root = null;
+        size = 0;
+        nodes.clear();
+    }
+
+    /**
+     * Visits, in ascending order of low bound, every interval that overlaps
+     * [from, to]
+     *
+     * @param from the lower bound of the query (inclusive)
+     * @param to   the upper bound of the query (inclusive)
+     * @param sink receives the events whose interval overlaps the query
+     */
+    void query(long from, long to, Consumer<Event> sink) {
+        query(root, from, to, sink);
+    }
+
+    /**
+     * Iterates lazily, in ascending order of low bound, over every interval
+     * that overlaps [from, to]. The iterator only keeps the path from the root
+     * to the next interval : O(log N) memory. The tree must not change while
+     * it is used.
+     *
+     * @param from the lower bound of the query (inclusive)
+     * @param to   the upper bound of the query (inclusive)
+     * @return the events whose interval overlaps the query
+     */
+    Iterator<Event> iterator(long from, long to) {
+        return new Iterator<>() {
+            // Les nœuds à visiter, le prochain en haut : les mêmes coupes que query
+            private final ArrayDeque<Node> path = new ArrayDeque<>();
+            private Node next;
+
+            {
+                descend(root);
+                advance();
+            }
+
+            private void descend(Node n) {
+                while (n != null && n.max >= from) {
+                    path.push(n);
+                    n = n.left;
+                }
+            }
+
+            private void advance() {
+                next = null;
+                while (!path.isEmpty()) {
+                    Node n = path.pop();
+                    // Les nœuds suivants commencent tous après la fin de la requête
+                    if (n.low > to) {
+                        path.clear();
+                        return;
+                    }
+                    descend(n.right);
+                    if (n.high >= from) {
+                        next = n;
+                        return;
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Event next() {
+                if (next == null)
+                    throw new NoSuchElementException();
+                Event res = next.event;
+                advance();
+                return res;
+            }
+        };
+    }
+
+    private static void query(Node n, long from, long to, Consumer<Event> sink) {
+        // Aucun intervalle de ce sous-arbre ne se termine après le début de la requête
+        if (n == null || n.max < from)
+            return;
+        query(n.left, from, to, sink);
+        // Tous les intervalles à droite commencent après la fin de la requête
+        if (n.low > to)
+            return;
+        if (n.high >= from)
+            sink.accept(n.event);
+        query(n.right, from, to, sink);
+    }
+
+    private static int compare(Node a, Node b) {
+        int c = Long.compare(a.low, b.low);
+        return c != 0 ? c : Long.compare(a.seq, b.seq);
+    }
+
+    private static Node insert(Node n, Node added) {
+        if (n == null)
+            return added;
+        if (compare(added, n) < 0)
+            n.left = insert(n.left, added);
+        else
+            n.right = insert(n.right, added);
+        return rebalance(n);
+    }
+
+    // Le nœud est dans l'arbre : la borne basse et le numéro mènent à lui
+    private static Node remove(Node n, Node removed) {
+        int c = compare(removed, n);
+        if (c < 0)
+            n.left = remove(n.left, removed);
+        else if (c > 0)
+            n.right = remove(n.right, removed);
+        else {
+            if (n.left == null)
+                return n.right;
+            if (n.right == null)
+                return n.left;
+            // Le successeur prend la place du nœud retiré
+            Node successor = n.right;
+            while (successor.left != null)
+                successor = successor.left;
+            successor.right = removeMin(n.right);
+            successor.left = n.left;
+            return rebalance(successor);
+        }
+        return rebalance(n);
+    }
+
+    private static Node removeMin(Node n) {
+        if (n.left == null)
+            return n.right;
+        n.left = removeMin(n.left);
+        return rebalance(n);
+    }
+
+    private static int height(Node n) {
+        return n == null ? 0 : n.height;
+    }
+
+    private static void update(Node n) {
+        n.height = 1 + Math.max(height(n.left), height(n.right));
+        long max = n.high;
+        if (n.left != null && n.left.max > max)
+            max = n.left.max;
+        if (n.right != null && n.right.max > max)
+            max = n.right.max;
+        n.max = max;
+    }
+
+    private static Node rotateRight(Node n) {
+        Node l = n.left;
+        n.left = l.right;
+        l.right = n;
+        update(n);
+        update(l);
+        return l;
+    }
+
+    private static Node rotateLeft(Node n) {
+        Node r = n.right;
+        n.right = r.left;
+        r.left = n;
+        update(n);
+        update(r);
+        return r;
+    }
+
+    private static Node rebalance(Node n) {
+        update(n);
+        int balance = height(n.left) - height(n.right);
+        if (balance > 1) {
+            if (height(n.left.left) < height(n.left.right))
+                n.left = rotateLeft(n.left);
+            return rotateRight(n);
+        }
+        if (balance < -1) {
+            if (height(n.right.right) < height(n.right.left))
+                n.right = rotateRight(n.right);
+            return rotateLeft(n);
+        }
+        return n;
+    }
+}
@@ -0,0 +1,184 @@
+package agenda;
+
+import jdk.jfr.*;
+
+/**
+ * Description : Records the measures of agendas as JDK Flight Recorder
+ * events, in the "Agenda" category. Each operation is one event, with its
+ * latency, so a recording gives the latency distribution of each operation,
+ * the ratio of events scanned to events matched, the growth of the indexes,
+ * and the hit rate of the day cache. The events are only built while a
+ * recording has them enabled.
+ * <p>
+ * A single instance may be shared by all the agendas.
+ */
+public final class JfrAgendaMetrics implements AgendaMetrics {
+
+    @Name("agenda.EventAdded")
+    @Label("Event Added")
+    @Category("Agenda")
+    @StackTrace(false)
+    static final class EventAdded extends jdk.jfr.Event {
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+
+        @Label("Events")
+        int events;
+
+        @Label("Simple Events")
+        int simpleEvents;
+
+        @Label("Repeating Events")
+        int repeatingEvents;
+    }
+
+    @Name("agenda.EventsAdded")
+    @Label("Events Added")
+    @Category("Agenda")
+    @StackTrace(false)
+    static final class EventsAdded extends jdk.jfr.Event {
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+
+        @Label("Added")
+        int added;
+
+        @Label("Events")
+        int events;
+
+        @Label("Simple Events")
+        int simpleEvents;
+
+        @Label("Repeating Events")
+        int repeatingEvents;
+    }
+
+    @Name("agenda.EventsInDay")
+    @Label("Events In Day")
+    @Category("Agenda")
+    @StackTrace(false)
+    static final class EventsInDay extends jdk.jfr.Event {
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+
+        @Label("Scanned")
+        int scanned;
+
+        @Label("Matched")
+        int matched;
+
+        @Label("Cached")
+        boolean cached;
+    }
+
+    @Name("agenda.FindByTitle")
+    @Label("Find By Title")
+    @Category("Agenda")
+    @StackTrace(false)
+    static final class FindByTitle extends jdk.jfr.Event {
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+
+        @Label("Match")
+        String match;
+
+        @Label("Found")
+        int found;
+    }
+
+    @Name("agenda.IsFreeFor")
+    @Label("Is Free For")
+    @Category("Agenda")
+    @StackTrace(false)
+    static final class IsFreeFor extends jdk.jfr.Event {
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+
+        @Label("Conflicts")
+        int conflicts;
+    }
+
+    // Les types des événements ci-dessus, lus à chaque opération sans rien allouer
+    private static final EventType[] TYPES = {
+            EventType.getEventType(EventAdded.class),
+            EventType.getEventType(EventsAdded.class),
+            EventType.getEventType(EventsInDay.class),
+            EventType.getEventType(FindByTitle.class),
+            EventType.getEventType(IsFreeFor.class)
+    };
+
+    /**
+     * @return true if a running recording has one of the agenda events
+     * enabled. Otherwise the agendas neither read the clock nor build events.
+     */
+    @Override
+    public boolean isEnabled() {
+        for (EventType type : TYPES)
+            if (type.isEnabled())
+                return true;
+        return false;
+    }
+
+    @Override
+    public void eventAdded(long nanos, int events, int simpleEvents, int repeatingEvents) {
+        EventAdded event = new EventAdded();
+        if (event.shouldCommit()) {
+            event.latency = nanos;
+            event.events = events;
+            event.simpleEvents = simpleEvents;
+            event.repeatingEvents = repeatingEvents;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void eventsAdded(long nanos, int added, int events, int simpleEvents, int repeatingEvents) {
+        EventsAdded event = new EventsAdded();
+        if (event.shouldCommit()) {
+            event.latency = nanos;
+            event.added = added;
+            event.events = events;
+            event.simpleEvents = simpleEvents;
+            event.repeatingEvents = repeatingEvents;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void eventsInDay(long nanos, int scanned, int matched, boolean cached) {
+        EventsInDay event = new EventsInDay();
+        if (event.shouldCommit()) {
+            event.latency = nanos;
+            event.scanned = scanned;
+            event.matched = matched;
+            event.cached = cached;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void findByTitle(long nanos, TitleMatch match, int found) {
+        FindByTitle event = new FindByTitle();
+        if (event.shouldCommit()) {
+            event.latency = nanos;
+            event.match = match.name();
+            event.found = found;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void isFreeFor(long nanos, int conflicts) {
+        IsFreeFor event = new IsFreeFor();
+        if (event.shouldCommit()) {
+            event.latency = nanos;
+            event.conflicts = conflicts;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package agenda;
+
+import java.time.LocalDateTime;
+
+/**
+ * Description : A concrete occurrence of an event, repeating or not
+ *
+ * @param event the event that occurs
+ * @param start the start time of this occurrence
+ */
+public record Occurrence(Event event, LocalDateTime start) {
+
+    /**
+     * @return the end time of this occurrence
+     */
+    public LocalDateTime end() {
+        return start.plus(event.getDuration());
+    }
+}
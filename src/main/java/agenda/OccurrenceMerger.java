@@ -0,0 +1,132 @@
+package agenda;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Description : Merges the occurrences of several events into a single
+ * iterator, in ascending order of start. Each event is expanded lazily, one
+ * occurrence ahead, so that a long range never materialises all its
+ * occurrences at once. Non-repeating events, already sorted by start, are
+ * merged as a single source.
+ */
+final class OccurrenceMerger implements Iterator<Occurrence> {
+
+    private record Head(Occurrence occurrence, Iterator<Occurrence> rest, int rank) {
+    }
+
+    // À début égal, l'ordre d'ajout des sources départage les occurrences
+    private final PriorityQueue<Head> heads = new PriorityQueue<>(
+            Comparator.comparing((Head h) -> h.occurrence().start()).thenComparingInt(Head::rank));
+    private int nextRank;
+
+    /**
+     * Adds the occurrences of an event to this merger
+     *
+     * @param event  the event
+     * @param starts the starts of its occurrences, in ascending order
+     */
+    void add(Event event, Iterator<LocalDateTime> starts) {
+        add(new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return starts.hasNext();
+            }
+
+            @Override
+            public Occurrence next() {
+                return new Occurrence(event, starts.next());
+            }
+        });
+    }
+
+    /**
+     * Adds the occurrences of non-repeating events to this merger, as a single
+     * source
+     *
+     * @param events the events, in ascending order of start second, as an
+     *               {@link IntervalTree} visits them
+     * @param from   the first day of the range (inclusive)
+     * @param to     the last day of the range (inclusive)
+     */
+    void addSimple(Iterator<Event> events, LocalDate from, LocalDate to) {
+        add(new Iterator<>() {
+            // Les occurrences de la seconde en cours, triées à la nanoseconde près
+            private final ArrayDeque<Occurrence> ready = new ArrayDeque<>();
+            private final List<Occurrence> second = new ArrayList<>();
+            private Event pending;
+
+            @Override
+            public boolean hasNext() {
+                fill();
+                return !ready.isEmpty();
+            }
+
+            @Override
+            public Occurrence next() {
+                fill();
+                if (ready.isEmpty())
+                    throw new NoSuchElementException();
+                return ready.poll();
+            }
+
+            private void fill() {
+                while (ready.isEmpty() && (pending != null || events.hasNext())) {
+                    Event first = pending != null ? pending : events.next();
+                    pending = null;
+                    collect(first);
+                    while (events.hasNext()) {
+                        Event e = events.next();
+                        if (e.startEpochSecond() != first.startEpochSecond()) {
+                            pending = e;
+                            break;
+                        }
+                        collect(e);
+                    }
+                    // Tri stable : à début égal, l'ordre de l'arbre est gardé
+                    second.sort(Comparator.comparing(Occurrence::start));
+                    ready.addAll(second);
+                    second.clear();
+                }
+            }
+
+            private void collect(Event e) {
+                Iterator<LocalDateTime> starts = e.occurrenceStarts(from, to);
+                if (starts.hasNext())
+                    second.add(new Occurrence(e, starts.next()));
+            }
+        });
+    }
+
+    /**
+     * Adds a source of occurrences to this merger
+     *
+     * @param occurrences the occurrences, in ascending order of start
+     */
+    private void add(Iterator<Occurrence> occurrences) {
+        if (occurrences.hasNext())
+            heads.add(new Head(occurrences.next(), occurrences, nextRank++));
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public Occurrence next() {
+        Head head = heads.poll();
+        if (head == null)
+            throw new NoSuchElementException();
+        if (head.rest().hasNext())
+            heads.add(new Head(head.rest().next(), head.rest(), head.rank()));
+        return head.occurrence();
+    }
+}
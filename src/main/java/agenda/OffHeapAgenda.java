@@ -0,0 +1,314 @@
+package agenda;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Description : An agenda that stores its events outside of the garbage
+ * collected heap.
+ * <p>
+ * Each event is copied into a fixed-width record (see {@link EventLayout}) in
+ * direct buffers allocated by chunks of 65 536 records, and its exceptions
+ * into a direct buffer of sorted epoch days. The heap only holds the table of
+ * distinct titles. Events are read through a {@link Cursor}, a flyweight that
+ * can be moved from record to record and exposes the getters of
+ * {@link Event}. A termination is kept as its last day. There is no index :
+ * queries scan the records.
+ */
+public final class OffHeapAgenda implements EventStore {
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_RECORDS = 1 << CHUNK_SHIFT;
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final long NANOS_PER_SECOND = 1_000_000_000;
+
+    /**
+     * A movable view of one record of this agenda
+     */
+    public final class Cursor {
+        private ByteBuffer chunk;
+        private int at;
+        private int index = -1;
+
+        private Cursor() {
+        }
+
+        /**
+         * Moves this cursor to an event
+         *
+         * @param index the index of the event, in the order it was added
+         * @return this cursor
+         */
+        public Cursor moveTo(int index) {
+            Objects.checkIndex(index, size);
+            this.index = index;
+            this.chunk = chunks.get(index >>> CHUNK_SHIFT);
+            this.at = (index & (CHUNK_RECORDS - 1)) * EventLayout.RECORD_SIZE;
+            return this;
+        }
+
+        /**
+         * @return the index of the current event
+         */
+        public int index() {
+            return index;
+        }
+
+        public String getTitle() {
+            int id = EventLayout.titleId(chunk, at);
+            return id < 0 ? null : titles.get(id);
+        }
+
+        public LocalDateTime getStart() {
+            return EventLayout.start(chunk, at);
+        }
+
+        public Duration getDuration() {
+            return EventLayout.duration(chunk, at);
+        }
+
+        /**
+         * @return the frequency of the current event, or null if it does not
+         * repeat
+         */
+        public ChronoUnit getFrequency() {
+            return EventLayout.frequency(chunk, at);
+        }
+
+        /**
+         * @return the last day of the current event, or null if it does not
+         * repeat or never ends
+         */
+        public LocalDate getTerminationDate() {
+            return EventLayout.terminationKind(chunk, at) == EventLayout.NO_TERMINATION ? null
+                    : LocalDate.ofEpochDay(EventLayout.termination(chunk, at));
+        }
+
+        /**
+         * Tests if the current event occurs on a given day, with the same rule
+         * as {@link Event#isInDay(LocalDate)}
+         *
+         * @param aDay the day to test
+         * @return true if the event occurs on that day
+         */
+        public boolean isInDay(LocalDate aDay) {
+            long day = aDay.toEpochDay();
+            long startSecond = EventLayout.startEpochSecond(chunk, at);
+            long startDay = Math.floorDiv(startSecond, SECONDS_PER_DAY);
+            ChronoUnit frequency = EventLayout.frequency(chunk, at);
+            // Cas événement simple
+            if (frequency == null) {
+                long end = startSecond + EventLayout.durationSeconds(chunk, at);
+                if ((long) EventLayout.startNano(chunk, at) + EventLayout.durationNano(chunk, at) >= NANOS_PER_SECOND)
+                    end++;
+                return day >= startDay && day <= Math.floorDiv(end, SECONDS_PER_DAY);
+            }
+
+            // Cas répétitif :
+            if (day < startDay)
+                return false;
+            if (EventLayout.terminationKind(chunk, at) != EventLayout.NO_TERMINATION
+                    && day > EventLayout.termination(chunk, at))
+                return false;
+            boolean occurs = switch (frequency) {
+                case DAYS -> true;
+                case WEEKS -> (day - startDay) % 7 == 0;
+                case MONTHS -> EventLayout.dayOfMonth(chunk, at) == aDay.getDayOfMonth();
+                default -> toEvent().isInDay(aDay);
+            };
+            return occurs && !isException(day);
+        }
+
+        // Les exceptions de l'événement sont triées : recherche dichotomique
+        private boolean isException(long day) {
+            int low = EventLayout.exceptionsOffset(chunk, at);
+            int high = low + EventLayout.exceptionsCount(chunk, at) - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long value = exceptions.getLong(8 * mid);
+                if (value < day)
+                    low = mid + 1;
+                else if (value > day)
+                    high = mid - 1;
+                else
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return a new event, equal to the current one, on the heap
+         */
+        public Event toEvent() {
+            return EventLayout.read(chunk, at, getTitle(), exceptions, 0);
+        }
+    }
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private int size;
+
+    private ByteBuffer exceptions = ByteBuffer.allocateDirect(8 * 1024);
+    private int exceptionCount;
+
+    private final Map<String, Integer> titleIds = new HashMap<>();
+    private final List<String> titles = new ArrayList<>();
+
+    /**
+     * Adds a copy of an event to this agenda
+     *
+     * @param e the event to add
+     */
+    public void addEvent(Event e) {
+        if ((size & (CHUNK_RECORDS - 1)) == 0)
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_RECORDS * EventLayout.RECORD_SIZE));
+        ByteBuffer chunk = chunks.get(size >>> CHUNK_SHIFT);
+        int at = (size & (CHUNK_RECORDS - 1)) * EventLayout.RECORD_SIZE;
+
+        Repetition repetition = e.repetition();
+        int count = repetition == null ? 0 : repetition.getNumberOfExceptions();
+        int offset = exceptionCount;
+        if (count > 0) {
+            long[] days = new long[count];
+            int[] k = { 0 };
+            repetition.forEachException(date -> days[k[0]++] = date.toEpochDay());
+            Arrays.sort(days);
+            reserveExceptions(count);
+            for (long day : days)
+                exceptions.putLong(8 * exceptionCount++, day);
+        }
+        EventLayout.write(chunk, at, e, titleId(e.getTitle()), offset, count);
+        if (e.getTerminationDate() != null)
+            EventLayout.terminateAt(chunk, at, e.getTerminationDate().toEpochDay());
+        size++;
+    }
+
+    /**
+     * Adds copies of several events to this agenda
+     *
+     * @param events the events to add
+     */
+    public void addAll(Collection<Event> events) {
+        for (Event e : events)
+            addEvent(e);
+    }
+
+    /**
+     * @return the number of events in this agenda
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return a new cursor, to be moved to an event before use
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Builds an event of this agenda on the heap
+     *
+     * @param index the index of the event, in the order it was added
+     * @return a new event, equal to the one added
+     */
+    public Event event(int index) {
+        return cursor().moveTo(index).toEvent();
+    }
+
+    /**
+     * @return a view of the events of this agenda, each built on the heap on
+     * access
+     */
+    public List<Event> getEvents() {
+        return new AbstractList<>() {
+            @Override
+            public Event get(int index) {
+                return event(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Visits the events that occur on a given day through a single cursor
+     *
+     * @param day  the day to test
+     * @param sink receives the cursor, moved to each event that occurs on that
+     *             day in the order they were added. It must not be kept.
+     */
+    public void forEachInDay(LocalDate day, Consumer<Cursor> sink) {
+        Cursor cursor = new Cursor();
+        for (int i = 0; i < size; i++)
+            if (cursor.moveTo(i).isInDay(day))
+                sink.accept(cursor);
+    }
+
+    /**
+     * Computes the events that occur on a given day
+     *
+     * @param day the day to test
+     * @return the events that occur on that day, built on the heap, in the
+     * order they were added
+     */
+    public List<Event> eventsInDay(LocalDate day) {
+        List<Event> res = new ArrayList<>();
+        forEachInDay(day, c -> res.add(c.toEvent()));
+        return res;
+    }
+
+    /**
+     * Finds the events with a given title, by scanning the title ids of the
+     * records
+     *
+     * @param title the title to search
+     * @return the events with exactly that title, built on the heap, in the
+     * order they were added
+     */
+    public List<Event> findByTitle(String title) {
+        List<Event> res = new ArrayList<>();
+        Integer id = title == null ? Integer.valueOf(-1) : titleIds.get(title);
+        if (id == null)
+            return res;
+        Cursor cursor = new Cursor();
+        for (int i = 0; i < size; i++) {
+            cursor.moveTo(i);
+            if (EventLayout.titleId(cursor.chunk, cursor.at) == id)
+                res.add(cursor.toEvent());
+        }
+        return res;
+    }
+
+    private int titleId(String title) {
+        if (title == null)
+            return -1;
+        Integer id = titleIds.get(title);
+        if (id == null) {
+            id = titles.size();
+            titles.add(title);
+            titleIds.put(title, id);
+        }
+        return id;
+    }
+
+    private void reserveExceptions(int count) {
+        long needed = 8L * ((long) exceptionCount + count);
+        if (needed <= exceptions.capacity())
+            return;
+        if (needed > Integer.MAX_VALUE)
+            throw new IllegalStateException("Too many exceptions for an off-heap agenda");
+        int capacity = (int) Math.min(Integer.MAX_VALUE & ~7, Math.max(needed, 2L * exceptions.capacity()));
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+        grown.put(0, exceptions, 0, 8 * exceptionCount);
+        exceptions = grown;
+    }
+}
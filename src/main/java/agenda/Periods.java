@@ -0,0 +1,121 @@
+package agenda;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.chrono.IsoChronology;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Description : Closed-form arithmetic on the periods of a repetition, for
+ * daily, weekly and monthly frequencies, with the results of
+ * {@link LocalDate#plus(long, java.time.temporal.TemporalUnit)} and
+ * {@link ChronoUnit#between(java.time.temporal.Temporal, java.time.temporal.Temporal)}.
+ * Other frequencies fall back to those methods.
+ */
+final class Periods {
+
+    // Le calendrier grégorien se répète tous les 400 ans
+    private static final int CYCLE_MONTHS = 400 * 12;
+
+    /**
+     * MONTHS_WITH_DAY[d - 29][m] is the number of months among the first m
+     * months of the cycle that have at least d days
+     */
+    private static final int[][] MONTHS_WITH_DAY = new int[3][CYCLE_MONTHS + 1];
+
+    static {
+        for (int m = 0; m < CYCLE_MONTHS; m++) {
+            int length = lengthOfMonth(m);
+            for (int d = 29; d <= 31; d++)
+                MONTHS_WITH_DAY[d - 29][m + 1] = MONTHS_WITH_DAY[d - 29][m] + (length >= d ? 1 : 0);
+        }
+    }
+
+    private Periods() {
+    }
+
+    /**
+     * Adds a number of periods to a day. A monthly repetition is clamped to
+     * the end of shorter months.
+     *
+     * @param day       the first day
+     * @param periods   the number of periods to add
+     * @param frequency the length of a period
+     * @return the day that many periods later
+     */
+    static LocalDate plus(LocalDate day, long periods, ChronoUnit frequency) {
+        return switch (frequency) {
+            case DAYS -> LocalDate.ofEpochDay(Math.addExact(day.toEpochDay(), periods));
+            case WEEKS -> LocalDate.ofEpochDay(Math.addExact(day.toEpochDay(), Math.multiplyExact(periods, 7)));
+            case MONTHS -> {
+                long month = Math.addExact(monthIndex(day), periods);
+                int year = Math.toIntExact(Math.floorDiv(month, 12));
+                int monthOfYear = Math.floorMod(month, 12) + 1;
+                int length = Month.of(monthOfYear).length(IsoChronology.INSTANCE.isLeapYear(year));
+                yield LocalDate.of(year, monthOfYear, Math.min(day.getDayOfMonth(), length));
+            }
+            default -> day.plus(periods, frequency);
+        };
+    }
+
+    /**
+     * Counts the whole periods between two days
+     *
+     * @param from      the first day
+     * @param to        the other day
+     * @param frequency the length of a period
+     * @return the number of whole periods from the first day to the other,
+     * negative if it is before, truncated toward zero
+     */
+    static long between(LocalDate from, LocalDate to, ChronoUnit frequency) {
+        return switch (frequency) {
+            case DAYS -> to.toEpochDay() - from.toEpochDay();
+            case WEEKS -> (to.toEpochDay() - from.toEpochDay()) / 7;
+            case MONTHS -> {
+                long months = monthIndex(to) - monthIndex(from);
+                int days = to.getDayOfMonth() - from.getDayOfMonth();
+                if (months > 0 && days < 0)
+                    months--;
+                else if (months < 0 && days > 0)
+                    months++;
+                yield months;
+            }
+            default -> frequency.between(from, to);
+        };
+    }
+
+    /**
+     * Counts the periods of a monthly repetition that fall on a real day :
+     * the months long enough to hold its day of month
+     *
+     * @param anchor  the first day of the repetition
+     * @param periods the number of periods, from the anchor
+     * @return the number of those periods whose month has the day of the
+     * anchor
+     */
+    static long monthsWithDayOf(LocalDate anchor, long periods) {
+        int day = anchor.getDayOfMonth();
+        if (day <= 28 || periods <= 0)
+            return Math.max(0, periods);
+        int[] counts = MONTHS_WITH_DAY[day - 29];
+        int first = Math.floorMod(monthIndex(anchor), CYCLE_MONTHS);
+        long cycles = periods / CYCLE_MONTHS;
+        int rest = (int) (periods % CYCLE_MONTHS);
+        long res = cycles * counts[CYCLE_MONTHS];
+        int end = first + rest;
+        if (end <= CYCLE_MONTHS)
+            res += counts[end] - counts[first];
+        else
+            res += counts[CYCLE_MONTHS] - counts[first] + counts[end - CYCLE_MONTHS];
+        return res;
+    }
+
+    static long monthIndex(LocalDate day) {
+        return 12L * day.getYear() + day.getMonthValue() - 1;
+    }
+
+    // La longueur d'un mois du cycle, compté depuis janvier de l'an 0
+    private static int lengthOfMonth(int month) {
+        return Month.of(month % 12 + 1).length(IsoChronology.INSTANCE.isLeapYear(month / 12));
+    }
+}
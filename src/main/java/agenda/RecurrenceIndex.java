@@ -0,0 +1,223 @@
+package agenda;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * Description : Groups the repeating events of an {@link Agenda} by frequency
+ * and by phase, so that a day query only tests the events that can possibly
+ * occur on that day :
+ * <UL>
+ * <LI>daily events can occur on any day,</LI>
+ * <LI>weekly events only on the day of week of their start,</LI>
+ * <LI>monthly events only on the day of month of their start.</LI>
+ * </UL>
+ * Any other frequency is kept apart and tested on every query.
+ */
+final class RecurrenceIndex {
+
+    private final List<Event> daily = new ArrayList<>();
+    private final List<List<Event>> weekly = buckets(7);
+    private final List<List<Event>> monthly = buckets(31);
+    private final List<Event> others = new ArrayList<>();
+    // La place de chaque événement dans son seau, pour le retirer en O(1)
+    private final Map<Event, Integer> positions = new IdentityHashMap<>();
+    private int size;
+    private long maxSpanDays;
+
+    private static List<List<Event>> buckets(int count) {
+        List<List<Event>> res = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            res.add(new ArrayList<>());
+        return res;
+    }
+
+    /**
+     * @return the number of events in this index
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the largest number of days an occurrence of an event of this
+     * index spills over after its start day
+     */
+    long maxSpanDays() {
+        return maxSpanDays;
+    }
+
+    /**
+     * Adds a repeating event to this index
+     *
+     * @param e the event to add, its repetition must be set
+     */
+    void add(Event e) {
+        List<Event> bucket = bucketOf(e);
+        positions.put(e, bucket.size());
+        bucket.add(e);
+        size++;
+        maxSpanDays = Math.max(maxSpanDays, e.spanDays());
+    }
+
+    /**
+     * Removes a repeating event from this index
+     *
+     * @param e         the event to remove
+     * @param frequency the frequency it had when it was added
+     * @return true if the event was in this index
+     */
+    boolean remove(Event e, ChronoUnit frequency) {
+        return remove(e, frequency, e.getStart().toLocalDate());
+    }
+
+    /**
+     * Removes a repeating event from this index. The last event of its bucket
+     * takes its place.
+     *
+     * @param e         the event to remove
+     * @param frequency the frequency it had when it was added
+     * @param start     the start day it had when it was added
+     * @return true if the event was in this index
+     */
+    boolean remove(Event e, ChronoUnit frequency, LocalDate start) {
+        Integer position = positions.remove(e);
+        if (position == null)
+            return false;
+        List<Event> bucket = bucketOf(frequency, start);
+        Event last = bucket.remove(bucket.size() - 1);
+        if (last != e) {
+            bucket.set(position, last);
+            positions.put(last, position);
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes all the events of this index
+     */
+    void clear() {
+        daily.clear();
+        weekly.forEach(List::clear);
+        monthly.forEach(List::clear);
+        others.clear();
+        positions.clear();
+        size = 0;
+        maxSpanDays = 0;
+    }
+
+    /**
+     * Visits the events that may occur on a given day. Each of them must still
+     * be checked with {@link Event#isInDay(LocalDate)}.
+     *
+     * @param day  the day to test
+     * @param sink receives the candidate events
+     */
+    void forEachCandidate(LocalDate day, Consumer<Event> sink) {
+        daily.forEach(sink);
+        weekly.get(day.getDayOfWeek().ordinal()).forEach(sink);
+        monthly.get(day.getDayOfMonth() - 1).forEach(sink);
+        others.forEach(sink);
+    }
+
+    /**
+     * Lists the events that may occur on a given day, in the order of
+     * {@link #forEachCandidate(LocalDate, Consumer)}
+     *
+     * @param day the day to test
+     * @return a read-only view of the candidate events, with random access
+     */
+    List<Event> candidates(LocalDate day) {
+        return new Concat(List.of(daily, weekly.get(day.getDayOfWeek().ordinal()),
+                monthly.get(day.getDayOfMonth() - 1), others));
+    }
+
+    /**
+     * Lists all the events of this index, in the order of
+     * {@link #forEach(Consumer)}
+     *
+     * @return a read-only view of the events, with random access
+     */
+    List<Event> all() {
+        List<List<Event>> parts = new ArrayList<>(40);
+        parts.add(daily);
+        parts.addAll(weekly);
+        parts.addAll(monthly);
+        parts.add(others);
+        return new Concat(parts);
+    }
+
+    /**
+     * Visits all the events of this index
+     *
+     * @param sink receives the events
+     */
+    void forEach(Consumer<Event> sink) {
+        daily.forEach(sink);
+        weekly.forEach(bucket -> bucket.forEach(sink));
+        monthly.forEach(bucket -> bucket.forEach(sink));
+        others.forEach(sink);
+    }
+
+    private List<Event> bucketOf(Event e) {
+        return bucketOf(e.getFrequency(), e.getStart().toLocalDate());
+    }
+
+    private List<Event> bucketOf(ChronoUnit frequency, LocalDate start) {
+        return switch (frequency) {
+            case DAYS -> daily;
+            case WEEKS -> weekly.get(start.getDayOfWeek().ordinal());
+            case MONTHS -> monthly.get(start.getDayOfMonth() - 1);
+            default -> others;
+        };
+    }
+
+    /**
+     * A view of several buckets, one after the other, that parallel streams can
+     * split by index
+     */
+    private static final class Concat extends AbstractList<Event> implements RandomAccess {
+        private final List<List<Event>> parts;
+        // starts[i] est l'index du premier événement de parts[i]
+        private final int[] starts;
+        private final int size;
+
+        Concat(List<List<Event>> parts) {
+            this.parts = parts;
+            this.starts = new int[parts.size()];
+            int total = 0;
+            for (int i = 0; i < parts.size(); i++) {
+                starts[i] = total;
+                total += parts.get(i).size();
+            }
+            this.size = total;
+        }
+
+        @Override
+        public Event get(int index) {
+            Objects.checkIndex(index, size);
+            int part = Arrays.binarySearch(starts, index);
+            if (part < 0)
+                part = -part - 2;
+            // Saute les seaux vides qui commencent au même index
+            while (starts[part] + parts.get(part).size() <= index)
+                part++;
+            return parts.get(part).get(index - starts[part]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
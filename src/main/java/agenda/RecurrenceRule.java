@@ -0,0 +1,171 @@
+package agenda;
+
+import java.lang.ref.WeakReference;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+/**
+ * Description : How an event repeats, independently of its start : a frequency
+ * and an optional bound, a number of occurrences or a last day.
+ * <p>
+ * Rules are immutable and interned : {@link #of(ChronoUnit)} and its variants
+ * return the same instance for equal rules, so the events sharing a rule, such
+ * as "weekly, 10 occurrences", share one object. The exceptions stay in the
+ * {@link Repetition} of each event. A rule no longer used by any event is
+ * dropped from the pool.
+ */
+public final class RecurrenceRule {
+
+    // Les règles en cours d'usage, par valeur ; la valeur ne retient pas la clé
+    private static final Map<RecurrenceRule, WeakReference<RecurrenceRule>> POOL = new WeakHashMap<>();
+
+    private final ChronoUnit frequency;
+    private final boolean countBounded;
+    private final long count;
+    private final LocalDate until;
+
+    private RecurrenceRule(ChronoUnit frequency, boolean countBounded, long count, LocalDate until) {
+        this.frequency = Objects.requireNonNull(frequency);
+        this.countBounded = countBounded;
+        this.count = count;
+        this.until = until;
+    }
+
+    /**
+     * @param frequency the frequency of the repetition
+     * @return the rule of a repetition that never ends
+     */
+    public static RecurrenceRule of(ChronoUnit frequency) {
+        return intern(new RecurrenceRule(frequency, false, 0, null));
+    }
+
+    /**
+     * @param frequency           the frequency of the repetition
+     * @param numberOfOccurrences the number of occurrences
+     * @return the rule of a repetition that ends after a number of occurrences
+     */
+    public static RecurrenceRule of(ChronoUnit frequency, long numberOfOccurrences) {
+        return intern(new RecurrenceRule(frequency, true, numberOfOccurrences, null));
+    }
+
+    /**
+     * @param frequency            the frequency of the repetition
+     * @param terminationInclusive the last day an occurrence may fall on
+     * @return the rule of a repetition that ends at a given date
+     */
+    public static RecurrenceRule of(ChronoUnit frequency, LocalDate terminationInclusive) {
+        return intern(new RecurrenceRule(frequency, false, 0, Objects.requireNonNull(terminationInclusive)));
+    }
+
+    private static RecurrenceRule intern(RecurrenceRule rule) {
+        synchronized (POOL) {
+            WeakReference<RecurrenceRule> ref = POOL.get(rule);
+            RecurrenceRule shared = ref == null ? null : ref.get();
+            if (shared != null)
+                return shared;
+            POOL.put(rule, new WeakReference<>(rule));
+            return rule;
+        }
+    }
+
+    /**
+     * @return the frequency of this rule
+     */
+    public ChronoUnit getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * @return true if this rule ends, after a number of occurrences or at a
+     * date
+     */
+    public boolean isBounded() {
+        return countBounded || until != null;
+    }
+
+    /**
+     * @return true if this rule ends after a number of occurrences
+     */
+    public boolean isCountBounded() {
+        return countBounded;
+    }
+
+    /**
+     * @return the number of occurrences of a count-bounded rule, 0 otherwise
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the last day of a date-bounded rule, null otherwise
+     */
+    public LocalDate getUntil() {
+        return until;
+    }
+
+    /**
+     * Computes the last day of a repetition of this rule
+     *
+     * @param anchor the start day of the repeated event
+     * @return the last day an occurrence may fall on, or null if the rule
+     * never ends
+     */
+    LocalDate lastDay(LocalDate anchor) {
+        if (until != null)
+            return until;
+        if (!countBounded)
+            return null;
+        return Periods.plus(anchor, count - 1, frequency);
+    }
+
+    /**
+     * Computes the number of occurrences of a repetition of this rule
+     *
+     * @param anchor the start day of the repeated event
+     * @return the number of occurrences, or Long.MAX_VALUE if the rule never
+     * ends
+     */
+    long numberOfOccurrences(LocalDate anchor) {
+        if (countBounded)
+            return count;
+        if (until == null)
+            return Long.MAX_VALUE;
+        // Une fin avant le début ne laisse aucune occurrence
+        if (until.isBefore(anchor))
+            return 0;
+        return 1 + Periods.between(anchor, until, frequency);
+    }
+
+    /**
+     * @param anchor the start day of the repeated event
+     * @return the termination of a repetition of this rule, or null if the
+     * rule never ends
+     */
+    Termination termination(LocalDate anchor) {
+        if (countBounded)
+            return new Termination(anchor, frequency, count);
+        return until == null ? null : new Termination(anchor, frequency, until);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof RecurrenceRule other && frequency == other.frequency
+                && countBounded == other.countBounded && count == other.count && Objects.equals(until, other.until);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(frequency, countBounded, count, until);
+    }
+
+    @Override
+    public String toString() {
+        if (countBounded)
+            return "RecurrenceRule{" + frequency + ", count=" + count + '}';
+        return until == null ? "RecurrenceRule{" + frequency + '}' : "RecurrenceRule{" + frequency + ", until=" + until + '}';
+    }
+}
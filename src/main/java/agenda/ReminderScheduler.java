@@ -0,0 +1,213 @@
+package agenda;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Description : Fires a reminder at the start of each occurrence of the events
+ * of an agenda.
+ * <p>
+ * The scheduler keeps a heap of the next occurrence of every event. Each
+ * {@link #tick()} pops the occurrences that are due, hands them to the
+ * reminder, and pushes the following occurrence of each repeating event : a
+ * tick costs O(log N) per reminder, whatever the size of the agenda.
+ * {@link #nextDue()} tells when the next tick is needed.
+ * <p>
+ * The scheduler follows the agenda : added events are scheduled, removed
+ * events are forgotten, and a change to the schedule, repetition, exceptions
+ * or termination of an event reschedules it. The entries made obsolete by a
+ * change stay in the heap and are dropped when they reach its head, or when
+ * they outnumber the valid ones : the heap stays within twice the number of
+ * events. Reminders run on virtual threads, in no guaranteed order. Like the
+ * agenda, the scheduler expects its events not to be changed while a tick
+ * runs.
+ */
+public final class ReminderScheduler implements AgendaListener, AutoCloseable {
+
+    /**
+     * An occurrence in the heap, valid while the event is at the same version
+     */
+    private record Entry(Event event, LocalDateTime start, long version, long seq) {
+    }
+
+    private final Agenda agenda;
+    private final Clock clock;
+    private final Consumer<Occurrence> reminder;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final PriorityQueue<Entry> heap = new PriorityQueue<>(
+            Comparator.comparing(Entry::start).thenComparingLong(Entry::seq));
+    // La version courante de chaque événement : ses entrées plus anciennes sont obsolètes
+    private final Map<Event, Long> versions = new IdentityHashMap<>();
+    // Les versions ne sont jamais réutilisées, même pour un événement retiré puis ajouté à nouveau
+    private long nextVersion;
+    private long nextSeq;
+
+    // Les occurrences qui commencent jusqu'à cet instant ont été rappelées
+    private LocalDateTime firedUntil;
+
+    /**
+     * Schedules the reminders of an agenda with the system clock
+     *
+     * @param agenda   the agenda to follow
+     * @param reminder receives each occurrence when it starts
+     */
+    public ReminderScheduler(Agenda agenda, Consumer<Occurrence> reminder) {
+        this(agenda, Clock.systemDefaultZone(), reminder);
+    }
+
+    /**
+     * Schedules the reminders of an agenda. Only the occurrences that start
+     * after the current time are reminded.
+     *
+     * @param agenda   the agenda to follow
+     * @param clock    the clock giving the current local time
+     * @param reminder receives each occurrence when it starts
+     */
+    public ReminderScheduler(Agenda agenda, Clock clock, Consumer<Occurrence> reminder) {
+        this.agenda = agenda;
+        this.clock = clock;
+        this.reminder = reminder;
+        this.firedUntil = LocalDateTime.now(clock);
+        synchronized (this) {
+            for (Event e : agenda.getEvents())
+                schedule(e, firedUntil);
+        }
+        agenda.addListener(this);
+    }
+
+    /**
+     * Fires the reminders of all the occurrences that started since the last
+     * tick
+     *
+     * @return the number of reminders fired
+     */
+    public synchronized int tick() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        int fired = 0;
+        Entry head;
+        while ((head = validHead()) != null && !head.start().isAfter(now)) {
+            heap.poll();
+            Occurrence occurrence = new Occurrence(head.event(), head.start());
+            executor.execute(() -> reminder.accept(occurrence));
+            fired++;
+            push(head.event(), head.version(), firstAfter(head.event(), head.start()));
+        }
+        if (now.isAfter(firedUntil))
+            firedUntil = now;
+        return fired;
+    }
+
+    /**
+     * @return the start of the next occurrence to remind, or null if there is
+     * none
+     */
+    public synchronized LocalDateTime nextDue() {
+        Entry head = validHead();
+        return head == null ? null : head.start();
+    }
+
+    // Le nombre d'entrées du tas, obsolètes comprises
+    synchronized int heapSize() {
+        return heap.size();
+    }
+
+    /**
+     * Stops following the agenda, and waits for the running reminders
+     */
+    @Override
+    public void close() {
+        agenda.removeListener(this);
+        executor.close();
+    }
+
+    @Override
+    public synchronized void eventAdded(Event e) {
+        schedule(e, firedUntil);
+    }
+
+    @Override
+    public synchronized void eventRemoved(Event e) {
+        versions.remove(e);
+        dropStaleEntries();
+    }
+
+    @Override
+    public synchronized void eventUpdated(Event e) {
+        schedule(e, firedUntil);
+    }
+
+    @Override
+    public synchronized void cleared() {
+        heap.clear();
+        versions.clear();
+    }
+
+    @Override
+    public synchronized void repetitionChanged(Event e) {
+        schedule(e, firedUntil);
+    }
+
+    @Override
+    public synchronized void exceptionAdded(Event e, LocalDate date) {
+        schedule(e, firedUntil);
+    }
+
+    @Override
+    public synchronized void exceptionRemoved(Event e, LocalDate date) {
+        schedule(e, firedUntil);
+    }
+
+    @Override
+    public synchronized void terminationChanged(Event e) {
+        schedule(e, firedUntil);
+    }
+
+    // Une nouvelle version de l'événement, programmée à partir d'un instant
+    private void schedule(Event e, LocalDateTime after) {
+        long version = nextVersion++;
+        versions.put(e, version);
+        push(e, version, firstAfter(e, after));
+        dropStaleEntries();
+    }
+
+    // Chaque événement a au plus une entrée valide : au-delà du double, les obsolètes sont majoritaires
+    private void dropStaleEntries() {
+        if (heap.size() > 2 * versions.size() + 16)
+            heap.removeIf(entry -> !isValid(entry));
+    }
+
+    private boolean isValid(Entry entry) {
+        Long version = versions.get(entry.event());
+        return version != null && version == entry.version();
+    }
+
+    private void push(Event e, long version, LocalDateTime start) {
+        if (start != null)
+            heap.add(new Entry(e, start, version, nextSeq++));
+    }
+
+    // Écarte les entrées obsolètes, ou d'événements retirés, en tête du tas
+    private Entry validHead() {
+        Entry head;
+        while ((head = heap.peek()) != null && !isValid(head))
+            heap.poll();
+        return head;
+    }
+
+    /**
+     * Finds the first occurrence of an event that starts strictly after an
+     * instant. An event occurs at most once a day.
+     */
+    private static LocalDateTime firstAfter(Event e, LocalDateTime after) {
+        Occurrence next = e.nextOccurrenceOnOrAfter(after.toLocalDate());
+        if (next != null && !next.start().isAfter(after))
+            next = e.hasRepetition() ? e.nextOccurrenceOnOrAfter(next.start().toLocalDate().plusDays(1)) : null;
+        return next == null ? null : next.start();
+    }
+}
@@ -2,8 +2,11 @@ package agenda;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public class Repetition {
 
@@ -20,11 +23,138 @@ public class Repetition {
      * </UL>
      */
     private final ChronoUnit myFrequency;
-    private final List<LocalDate> exceptions = new ArrayList<>();
-    private Termination termination;
+
+    /**
+     * The rule of this repetition, shared with the other repetitions of the
+     * same frequency and bound
+     */
+    private RecurrenceRule rule;
+
+    /**
+     * The start day of the repeated event, or null if unknown
+     */
+    private final LocalDate anchor;
+
+    // Valeurs dérivées de l'ancre, pour calculer les occurrences sans allocation
+    private final long anchorEpochDay;
+    private final long anchorMonthIndex;
+
+    /**
+     * The exceptions that fall on an occurrence, by index of occurrence since
+     * the anchor, null until the first one
+     */
+    private BitSet exceptionIndexes;
+
+    // Le nombre de bits de exceptionIndexes, tenu à jour pour ne pas les compter
+    private int occurrenceExceptions;
+
+    // Le nombre de ces bits au-delà de la terminaison, recompté quand la règle change
+    private int exceptionsPastTermination;
+
+    /**
+     * The other exceptions : those that are not on an occurrence, or all of
+     * them when there is no anchor. Null until the first one.
+     */
+    private Set<LocalDate> otherExceptions;
+
+    /**
+     * The termination given without anchor : it can not be computed from the
+     * rule
+     */
+    private Termination detachedTermination;
 
     public Repetition(ChronoUnit myFrequency) {
-        this.myFrequency = myFrequency;
+        this(myFrequency, null);
+    }
+
+    /**
+     * Constructs a repetition of an event starting on a given day, so that its
+     * exceptions can be stored by index of occurrence
+     *
+     * @param myFrequency the frequency of this repetition
+     * @param anchor      the start day of the repeated event
+     */
+    Repetition(ChronoUnit myFrequency, LocalDate anchor) {
+        this(RecurrenceRule.of(myFrequency), anchor);
+    }
+
+    /**
+     * Constructs a repetition of an event starting on a given day
+     *
+     * @param rule   the rule of this repetition
+     * @param anchor the start day of the repeated event
+     */
+    Repetition(RecurrenceRule rule, LocalDate anchor) {
+        this.rule = rule;
+        this.myFrequency = rule.getFrequency();
+        this.anchor = anchor;
+        this.anchorEpochDay = anchor == null ? 0 : anchor.toEpochDay();
+        this.anchorMonthIndex = anchor == null ? 0 : monthIndex(anchor);
+    }
+
+    /**
+     * @return a copy of this repetition, with its own exceptions
+     */
+    Repetition copy() {
+        Repetition res = new Repetition(rule, anchor);
+        if (exceptionIndexes != null)
+            res.exceptionIndexes = (BitSet) exceptionIndexes.clone();
+        res.occurrenceExceptions = occurrenceExceptions;
+        res.exceptionsPastTermination = exceptionsPastTermination;
+        if (otherExceptions != null)
+            res.otherExceptions = new HashSet<>(otherExceptions);
+        res.detachedTermination = detachedTermination;
+        return res;
+    }
+
+    /**
+     * @return the shared rule of this repetition
+     */
+    RecurrenceRule rule() {
+        return rule;
+    }
+
+    /**
+     * @return the last day an occurrence may fall on, or null if this
+     * repetition never ends
+     */
+    LocalDate lastDay() {
+        if (anchor == null)
+            return detachedTermination == null ? null : detachedTermination.terminationDateInclusive();
+        return rule.lastDay(anchor);
+    }
+
+    /**
+     * Computes the index of the occurrence that falls on a given day, with the
+     * same rule as {@link Event#isInDay(LocalDate)}. Daily and weekly
+     * repetitions use epoch-day arithmetic, monthly ones year/month arithmetic,
+     * so that no date is allocated.
+     *
+     * @param day the day to test
+     * @return the index of the occurrence on that day, or -1 if no occurrence
+     * falls on that day (or if this repetition has no anchor)
+     */
+    long occurrenceIndex(LocalDate day) {
+        if (anchor == null)
+            return -1;
+        long days = day.toEpochDay() - anchorEpochDay;
+        if (days < 0)
+            return -1;
+        return switch (myFrequency) {
+            case DAYS -> days;
+            case WEEKS -> days % 7 == 0 ? days / 7 : -1;
+            case MONTHS -> day.getDayOfMonth() == anchor.getDayOfMonth()
+                    ? monthIndex(day) - anchorMonthIndex
+                    : -1;
+            default -> {
+                long steps = myFrequency.between(anchor, day);
+                yield anchor.plus(steps, myFrequency).equals(day) ? steps : -1;
+            }
+        };
+    }
+
+    private static long monthIndex(LocalDate day) {
+        return 12L * day.getYear() + day.getMonthValue() - 1;
     }
 
     /**
@@ -34,12 +164,146 @@ public class Repetition {
      */
 
     public boolean isException(LocalDate date) {
-        return exceptions.contains(date);
+        int index = bitOf(date);
+        if (index >= 0)
+            return exceptionIndexes != null && exceptionIndexes.get(index);
+        return otherExceptions != null && otherExceptions.contains(date);
+    }
+
+    /**
+     * Tests if the occurrence of a given index is an exception
+     *
+     * @param index the index of the occurrence since the anchor
+     * @return true if that occurrence does not take place
+     */
+    boolean isExceptionAt(long index) {
+        return exceptionIndexes != null && index <= Integer.MAX_VALUE && exceptionIndexes.get((int) index);
     }
 
     public void addException(LocalDate date) {
-        // TODO : implémenter cette méthode
-        exceptions.add(date);
+        int index = bitOf(date);
+        if (index >= 0) {
+            if (exceptionIndexes == null)
+                exceptionIndexes = new BitSet();
+            if (!exceptionIndexes.get(index)) {
+                exceptionIndexes.set(index);
+                occurrenceExceptions++;
+                if (index >= periods())
+                    exceptionsPastTermination++;
+            }
+        } else {
+            if (otherExceptions == null)
+                otherExceptions = new HashSet<>();
+            otherExceptions.add(date);
+        }
+    }
+
+    /**
+     * Adds several exceptions at once
+     *
+     * @param dates the dates when the event must not repeat
+     */
+    public void addExceptions(Collection<LocalDate> dates) {
+        for (LocalDate date : dates)
+            addException(date);
+    }
+
+    /**
+     * Removes an exception
+     *
+     * @param date a date when the event must repeat again
+     * @return true if that date was an exception
+     */
+    public boolean removeException(LocalDate date) {
+        int index = bitOf(date);
+        if (index < 0)
+            return otherExceptions != null && otherExceptions.remove(date);
+        if (exceptionIndexes == null || !exceptionIndexes.get(index))
+            return false;
+        exceptionIndexes.clear(index);
+        occurrenceExceptions--;
+        if (index >= periods())
+            exceptionsPastTermination--;
+        return true;
+    }
+
+    /**
+     * Removes several exceptions at once
+     *
+     * @param dates the dates when the event must repeat again
+     */
+    public void removeExceptions(Collection<LocalDate> dates) {
+        for (LocalDate date : dates)
+            removeException(date);
+    }
+
+    /**
+     * @return the number of distinct exceptions of this repetition
+     */
+    public int getNumberOfExceptions() {
+        return occurrenceExceptions + (otherExceptions == null ? 0 : otherExceptions.size());
+    }
+
+    /**
+     * Visits the exceptions of this repetition
+     *
+     * @param sink receives the dates of the exceptions
+     */
+    void forEachException(Consumer<LocalDate> sink) {
+        if (exceptionIndexes != null)
+            for (int i = exceptionIndexes.nextSetBit(0); i >= 0; i = exceptionIndexes.nextSetBit(i + 1))
+                sink.accept(anchor.plus(i, myFrequency));
+        if (otherExceptions != null)
+            otherExceptions.forEach(sink);
+    }
+
+    /**
+     * Counts the occurrences that take place : the periods up to the
+     * termination, less those that fall on a missing day of a shorter month,
+     * less the exceptions. Daily, weekly and monthly repetitions are counted
+     * in constant time.
+     *
+     * @return the number of days the repeated event occurs on, or
+     * Long.MAX_VALUE if it never ends (or if this repetition has no anchor)
+     */
+    long effectiveNumberOfOccurrences() {
+        if (anchor == null || !rule.isBounded())
+            return Long.MAX_VALUE;
+        long periods = periods();
+        long occurring = switch (myFrequency) {
+            case DAYS, WEEKS -> periods;
+            case MONTHS -> Periods.monthsWithDayOf(anchor, periods);
+            default -> {
+                // Pas de forme close : chaque période est vérifiée
+                long count = 0;
+                for (long i = 0; i < periods; i++)
+                    if (occurrenceIndex(anchor.plus(i, myFrequency)) == i)
+                        count++;
+                yield count;
+            }
+        };
+        return occurring - (occurrenceExceptions - exceptionsPastTermination);
+    }
+
+    // Le nombre de périodes jusqu'à la terminaison, Long.MAX_VALUE sans fin
+    private long periods() {
+        return anchor == null || !rule.isBounded() ? Long.MAX_VALUE : Math.max(0, rule.numberOfOccurrences(anchor));
+    }
+
+    // Recompte les exceptions au-delà de la terminaison, en O(exceptions) sans allocation
+    private void countExceptionsPastTermination() {
+        exceptionsPastTermination = 0;
+        long periods = periods();
+        if (exceptionIndexes == null || periods >= exceptionIndexes.length())
+            return;
+        for (int i = exceptionIndexes.nextSetBit((int) periods); i >= 0; i = exceptionIndexes.nextSetBit(i + 1))
+            exceptionsPastTermination++;
+    }
+
+    // L'index du bit d'une exception, ou -1 si elle est stockée dans otherExceptions
+    private int bitOf(LocalDate date) {
+        long index = occurrenceIndex(date);
+        return index > Integer.MAX_VALUE ? -1 : (int) index;
     }
 
     /**
@@ -48,12 +312,33 @@ public class Repetition {
      * @param termination la terminaison de la répétition
      */
     public void setTermination(Termination termination) {
-        // TODO : implémenter cette méthode
-        this.termination = termination;
+        if (termination == null)
+            rule = RecurrenceRule.of(myFrequency);
+        else if (termination.isCountBounded())
+            rule = RecurrenceRule.of(myFrequency, termination.numberOfOccurrences());
+        else
+            rule = RecurrenceRule.of(myFrequency, termination.terminationDateInclusive());
+        if (anchor == null)
+            detachedTermination = termination;
+        countExceptionsPastTermination();
+    }
+
+    /**
+     * Sets the rule of this repetition, with the same frequency
+     *
+     * @param rule the shared rule
+     */
+    void setRule(RecurrenceRule rule) {
+        this.rule = rule;
+        countExceptionsPastTermination();
     }
 
+    /**
+     * @return the termination of this repetition, built from its rule, or null
+     * if it never ends
+     */
     public Termination getTermination() {
-        return termination;
+        return anchor == null ? detachedTermination : rule.termination(anchor);
     }
 
 }
@@ -9,15 +9,27 @@ public class Termination {
     private final LocalDate terminationDateInclusive;
     private final long numberOfOccurrences;
 
+    /**
+     * True if this termination was given as a number of occurrences, false if
+     * it was given as a date
+     */
+    private final boolean countBounded;
+
     public LocalDate terminationDateInclusive() {
-        // TODO : implémenter cette méthode
-        return terminationDateInclusive;    }
+        return terminationDateInclusive;
+    }
 
     public long numberOfOccurrences() {
-        // TODO : implémenter cette méthode
         return numberOfOccurrences;
     }
 
+    /**
+     * @return true if this termination was given as a number of occurrences,
+     * false if it was given as a date
+     */
+    boolean isCountBounded() {
+        return countBounded;
+    }
 
     /**
      * Constructs a  termination at a given date
@@ -32,9 +44,11 @@ public class Termination {
      * @see ChronoUnit#between(Temporal, Temporal)
      */
     public Termination(LocalDate start, ChronoUnit frequency, LocalDate terminationInclusive) {
-        // TODO : implémenter cette méthode
         this.terminationDateInclusive = terminationInclusive;
-        this.numberOfOccurrences = 1 + frequency.between(start, terminationInclusive);
+        this.numberOfOccurrences = terminationInclusive.isBefore(start)
+                ? 0
+                : 1 + Periods.between(start, terminationInclusive, frequency);
+        this.countBounded = false;
     }
 
     /**
@@ -49,9 +63,9 @@ public class Termination {
      * @param numberOfOccurrences the number of occurrences of this repetitive event
      */
     public Termination(LocalDate start, ChronoUnit frequency, long numberOfOccurrences) {
-        // TODO : implémenter cette méthode
         this.numberOfOccurrences = numberOfOccurrences;
-        this.terminationDateInclusive = start.plus((numberOfOccurrences - 1), frequency);
+        this.terminationDateInclusive = Periods.plus(start, numberOfOccurrences - 1, frequency);
+        this.countBounded = true;
     }
 
 }
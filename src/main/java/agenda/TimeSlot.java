@@ -0,0 +1,20 @@
+package agenda;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Description : A span of time, free of any event
+ *
+ * @param start the start of the slot (inclusive)
+ * @param end   the end of the slot (exclusive)
+ */
+public record TimeSlot(LocalDateTime start, LocalDateTime end) {
+
+    /**
+     * @return the length of this slot
+     */
+    public Duration duration() {
+        return Duration.between(start, end);
+    }
+}
@@ -0,0 +1,115 @@
+package agenda;
+
+import java.util.*;
+
+/**
+ * Description : Indexes the events of an {@link Agenda} by title. Exact
+ * lookups go through a hash map ; case-insensitive and prefix lookups go
+ * through a sorted map keyed by the lower-case title, where all the titles
+ * sharing a prefix are contiguous. The events of a title are kept in
+ * insertion order, in a linked hash set : events are compared by identity, so
+ * an event is removed in O(1) however many share its title.
+ */
+final class TitleIndex {
+
+    private final Map<String, Set<Event>> byTitle = new HashMap<>();
+    private final NavigableMap<String, Set<Event>> byFoldedTitle = new TreeMap<>();
+
+    private static String fold(String title) {
+        return title.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Adds an event to this index
+     *
+     * @param e the event to add
+     */
+    void add(Event e) {
+        String title = e.getTitle();
+        byTitle.computeIfAbsent(title, k -> new LinkedHashSet<>()).add(e);
+        if (title != null)
+            byFoldedTitle.computeIfAbsent(fold(title), k -> new LinkedHashSet<>()).add(e);
+    }
+
+    /**
+     * Adds several events to this index. The events are grouped by title
+     * first, so that each map is updated once per distinct title.
+     *
+     * @param events the events to add, in insertion order
+     */
+    void addAll(Collection<Event> events) {
+        Map<String, List<Event>> batch = new HashMap<>();
+        Map<String, List<Event>> foldedBatch = new HashMap<>();
+        for (Event e : events) {
+            String title = e.getTitle();
+            batch.computeIfAbsent(title, k -> new ArrayList<>()).add(e);
+            if (title != null)
+                foldedBatch.computeIfAbsent(fold(title), k -> new ArrayList<>()).add(e);
+        }
+        batch.forEach((title, added) -> byTitle.computeIfAbsent(title, k -> new LinkedHashSet<>()).addAll(added));
+        foldedBatch.forEach((folded, added) -> byFoldedTitle.computeIfAbsent(folded, k -> new LinkedHashSet<>()).addAll(added));
+    }
+
+    /**
+     * Removes an event from this index
+     *
+     * @param e the event to remove
+     */
+    void remove(Event e) {
+        remove(e, e.getTitle());
+    }
+
+    /**
+     * Removes an event from this index
+     *
+     * @param e     the event to remove
+     * @param title the title the event had when it was added
+     */
+    void remove(Event e, String title) {
+        removeFrom(byTitle, title, e);
+        if (title != null)
+            removeFrom(byFoldedTitle, fold(title), e);
+    }
+
+    /**
+     * Removes all the events of this index
+     */
+    void clear() {
+        byTitle.clear();
+        byFoldedTitle.clear();
+    }
+
+    private static void removeFrom(Map<String, Set<Event>> map, String key, Event e) {
+        Set<Event> events = map.get(key);
+        if (events == null)
+            return;
+        events.remove(e);
+        if (events.isEmpty())
+            map.remove(key);
+    }
+
+    /**
+     * Finds the events matching a title
+     *
+     * @param title the title to search
+     * @param match how the title is matched
+     * @return the matching events, a new list
+     */
+    List<Event> find(String title, TitleMatch match) {
+        List<Event> res = new ArrayList<>();
+        switch (match) {
+            case EXACT -> res.addAll(byTitle.getOrDefault(title, Set.of()));
+            case IGNORE_CASE -> res.addAll(byFoldedTitle.getOrDefault(fold(title), Set.of()));
+            case PREFIX, PREFIX_IGNORE_CASE -> {
+                String prefix = fold(title);
+                for (Set<Event> events : byFoldedTitle.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+                    for (Event e : events) {
+                        if (match == TitleMatch.PREFIX_IGNORE_CASE || e.getTitle().startsWith(title))
+                            res.add(e);
+                    }
+                }
+            }
+        }
+        return res;
+    }
+}
@@ -0,0 +1,24 @@
+package agenda;
+
+/**
+ * Description : The ways of matching a title in
+ * {@link Agenda#findByTitle(String, TitleMatch)}
+ */
+public enum TitleMatch {
+    /**
+     * The title is equal to the searched one
+     */
+    EXACT,
+    /**
+     * The title is equal to the searched one, ignoring case
+     */
+    IGNORE_CASE,
+    /**
+     * The title starts with the searched one
+     */
+    PREFIX,
+    /**
+     * The title starts with the searched one, ignoring case
+     */
+    PREFIX_IGNORE_CASE
+}
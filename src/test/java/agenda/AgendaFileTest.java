@@ -0,0 +1,125 @@
+package agenda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste l'enregistrement d'un agenda dans un fichier binaire
+ */
+public class AgendaFileTest {
+    // November 1st, 2020
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    // January 5, 2021
+    LocalDate jan_5_2021 = LocalDate.of(2021, 1, 5);
+
+    // November 1st, 2020, 22:30
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+
+    // 120 minutes
+    Duration min_120 = Duration.ofMinutes(120);
+
+    @TempDir
+    Path dir;
+
+    Agenda agenda;
+
+    @BeforeEach
+    void setUp() {
+        Event simple = new Event("Simple event", nov_1_2020_22_30.withNano(500), min_120.plusNanos(7));
+
+        Event fixedTermination = new Event("Fixed termination weekly", nov_1_2020_22_30, min_120);
+        fixedTermination.setRepetition(ChronoUnit.WEEKS);
+        fixedTermination.setTermination(jan_5_2021);
+        fixedTermination.addException(nov_1_2020.plusWeeks(2));
+        fixedTermination.addException(nov_1_2020.plusDays(3));
+
+        Event fixedRepetitions = new Event("Fixed termination weekly", nov_1_2020_22_30, min_120);
+        fixedRepetitions.setRepetition(ChronoUnit.WEEKS);
+        fixedRepetitions.setTermination(10);
+
+        Event neverEnding = new Event("Jamais terminé ☺", nov_1_2020_22_30, min_120);
+        neverEnding.setRepetition(ChronoUnit.MONTHS);
+
+        agenda = new Agenda();
+        agenda.addEvent(simple);
+        agenda.addEvent(fixedTermination);
+        agenda.addEvent(fixedRepetitions);
+        agenda.addEvent(neverEnding);
+        agenda.addEvent(new Event(null, nov_1_2020_22_30, min_120));
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        Path file = dir.resolve("agenda.bin");
+        AgendaFile.write(agenda, file);
+        AgendaFile loaded = AgendaFile.open(file);
+        assertEquals(5, loaded.size(), "5 événements relus");
+        List<Event> original = agenda.getEvents();
+        for (int i = 0; i < original.size(); i++) {
+            Event expected = original.get(i);
+            Event actual = loaded.event(i);
+            assertEquals(expected.toString(), actual.toString(), "Même titre, début et durée");
+            assertEquals(expected.getNumberOfOccurrences(), actual.getNumberOfOccurrences(), "Même terminaison");
+            assertEquals(expected.getTerminationDate(), actual.getTerminationDate(), "Même terminaison");
+            for (int d = -1; d < 120; d++)
+                assertEquals(expected.isInDay(nov_1_2020.plusDays(d)), actual.isInDay(nov_1_2020.plusDays(d)),
+                        "Mêmes occurrences pour " + expected);
+        }
+        assertSame(loaded.event(1), loaded.events().get(1), "Un événement n'est construit qu'une fois");
+        assertEquals(jan_5_2021, loaded.event(1).getTerminationDate(),
+                "Une terminaison par date garde sa date exacte");
+    }
+
+    @Test
+    public void sizeCountsEverySection() throws IOException {
+        Path file = dir.resolve("agenda.bin");
+        AgendaFile.write(agenda, file);
+        long titleLength = "Simple event".getBytes(StandardCharsets.UTF_8).length
+                + "Fixed termination weekly".getBytes(StandardCharsets.UTF_8).length
+                + "Jamais terminé ☺".getBytes(StandardCharsets.UTF_8).length;
+        assertEquals(Files.size(file), AgendaFile.fileSize(5, 2, 3, titleLength),
+                "La taille prévue est celle du fichier écrit");
+        // Les enregistrements tiennent juste, mais pas l'en-tête ni la table des titres
+        long events = Integer.MAX_VALUE / EventLayout.RECORD_SIZE;
+        assertTrue(AgendaFile.fileSize(events, 0, 0, Integer.MAX_VALUE - events * EventLayout.RECORD_SIZE)
+                > Integer.MAX_VALUE, "L'en-tête et la table des titres comptent");
+    }
+
+    @Test
+    public void toAgenda() throws IOException {
+        Path file = dir.resolve("agenda.bin");
+        AgendaFile.write(agenda, file);
+        Agenda loaded = AgendaFile.open(file).toAgenda();
+        assertEquals(agenda.eventsInDay(nov_1_2020).size(), loaded.eventsInDay(nov_1_2020).size(),
+                "Mêmes événements le 1er novembre");
+        assertEquals(2, loaded.findByTitle("Fixed termination weekly").size(), "Titres partagés relus");
+    }
+
+    @Test
+    public void notAnAgendaFile() throws IOException {
+        Path file = dir.resolve("other.bin");
+        Files.write(file, new byte[64]);
+        assertThrows(IOException.class, () -> AgendaFile.open(file), "Le fichier est reconnu");
+    }
+
+    @Test
+    public void emptyAgenda() throws IOException {
+        Path file = dir.resolve("empty.bin");
+        AgendaFile.write(new Agenda(), file);
+        assertEquals(0, AgendaFile.open(file).size(), "Un agenda vide");
+    }
+}
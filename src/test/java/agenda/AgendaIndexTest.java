@@ -0,0 +1,158 @@
+package agenda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste les index des événements de l'agenda
+ */
+public class AgendaIndexTest {
+    // November 1st, 2020
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    static final ChronoUnit[] FREQUENCIES = { ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS };
+
+    Agenda agenda;
+
+    List<Event> all;
+
+    @BeforeEach
+    void setUp() {
+        agenda = new Agenda();
+        all = new ArrayList<>();
+        Random random = new Random(2020);
+        for (int i = 0; i < 2_000; i++) {
+            LocalDateTime start = nov_1_2020.atStartOfDay()
+                    .plusMinutes(random.nextInt(60 * 24 * 60));
+            // Quelques événements longs qui s'étendent sur plusieurs jours
+            Duration duration = Duration.ofMinutes(i % 50 == 0 ? random.nextInt(60 * 24 * 10) : random.nextInt(180));
+            Event e = new Event("Event " + i, start, duration);
+            // Un événement sur 4 se répète, avec des terminaisons et exceptions
+            if (i % 4 == 0) {
+                e.setRepetition(FREQUENCIES[random.nextInt(FREQUENCIES.length)]);
+                if (i % 3 == 0)
+                    e.setTermination(1 + random.nextInt(20));
+                e.addException(start.toLocalDate().plusWeeks(1));
+            }
+            agenda.addEvent(e);
+            all.add(e);
+        }
+    }
+
+    @Test
+    public void indexMatchesLinearScan() {
+        for (int d = -2; d < 400; d++) {
+            LocalDate day = nov_1_2020.plusDays(d);
+            List<Event> expected = all.stream().filter(e -> e.isInDay(day)).toList();
+            List<Event> found = agenda.eventsInDay(day);
+            assertEquals(expected.size(), found.size(), "Même nombre d'événements le " + day);
+            assertTrue(found.containsAll(expected), "Mêmes événements le " + day);
+        }
+    }
+
+    @Test
+    public void eventEndingAtMidnightIsInNextDay() {
+        Agenda testAgenda = new Agenda();
+        Event untilMidnight = new Event("Until midnight", nov_1_2020.atTime(22, 0), Duration.ofHours(2));
+        testAgenda.addEvent(untilMidnight);
+        assertTrue(testAgenda.eventsInDay(nov_1_2020.plusDays(1)).contains(untilMidnight),
+                "Comme isInDay, un événement finissant à minuit touche le jour suivant");
+        assertTrue(testAgenda.eventsInDay(nov_1_2020.plusDays(2)).isEmpty(),
+                "Mais pas le surlendemain");
+    }
+
+    @Test
+    public void monthlyEventOnTheThirtyFirst() {
+        Agenda testAgenda = new Agenda();
+        Event monthly = new Event("Monthly", LocalDateTime.of(2021, 1, 31, 10, 0), Duration.ofHours(1));
+        monthly.setRepetition(ChronoUnit.MONTHS);
+        testAgenda.addEvent(monthly);
+        assertTrue(testAgenda.eventsInDay(LocalDate.of(2021, 3, 31)).contains(monthly),
+                "Le 31 mars est une occurrence");
+        assertTrue(testAgenda.eventsInDay(LocalDate.of(2021, 2, 28)).isEmpty(),
+                "Comme isInDay, pas d'occurrence en février");
+    }
+
+    @Test
+    public void nonRepeatingEventsAreSortedByStart() {
+        List<Event> found = agenda.eventsInDay(nov_1_2020.plusDays(10)).stream()
+                .filter(e -> !e.hasRepetition()).toList();
+        for (int i = 1; i < found.size(); i++)
+            assertFalse(found.get(i).getStart().isBefore(found.get(i - 1).getStart()),
+                    "Les événements sont triés par date de début");
+    }
+
+    @Test
+    public void repetitionSetAfterAddingIsIndexed() {
+        Agenda testAgenda = new Agenda();
+        Event weekly = new Event("Weekly", nov_1_2020.atTime(10, 0), Duration.ofHours(1));
+        testAgenda.addEvent(weekly);
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        assertEquals(List.of(weekly), testAgenda.eventsInDay(nov_1_2020.plusWeeks(3)),
+                "L'événement doit être réindexé comme répétitif");
+        weekly.setRepetition(ChronoUnit.DAYS);
+        assertEquals(List.of(weekly), testAgenda.eventsInDay(nov_1_2020.plusDays(3)),
+                "Puis réindexé avec sa nouvelle fréquence");
+        assertEquals(1, testAgenda.eventsInDay(nov_1_2020).size(), "Sans doublon");
+    }
+
+    @Test
+    public void parallelQueriesMatchSequentialOnes() {
+        Agenda sequential = new Agenda();
+        sequential.setParallelThreshold(Integer.MAX_VALUE);
+        sequential.addAll(all);
+        agenda.setParallelThreshold(1);
+        for (int d = -2; d < 100; d++) {
+            LocalDate day = nov_1_2020.plusDays(d);
+            assertEquals(sequential.eventsInDay(day), agenda.eventsInDay(day),
+                    "Mêmes événements, dans le même ordre, le " + day);
+        }
+        assertEquals(sequential.eventsBetween(nov_1_2020, nov_1_2020.plusDays(90)).toList(),
+                agenda.eventsBetween(nov_1_2020, nov_1_2020.plusDays(90)).toList(),
+                "Mêmes occurrences, dans le même ordre");
+        assertThrows(IllegalArgumentException.class, () -> agenda.setParallelThreshold(0));
+    }
+
+    @Test
+    public void bulkLoadMatchesOneByOneLoad() {
+        for (int threshold : new int[] { 1, Integer.MAX_VALUE }) {
+            Agenda bulk = new Agenda();
+            bulk.setParallelThreshold(threshold);
+            // Un premier lot, puis un second fusionné avec le premier
+            bulk.addAll(all.subList(0, 700));
+            bulk.addAll(all.subList(700, all.size()));
+            assertEquals(all, bulk.getEvents(), "Les événements sont dans l'ordre d'ajout");
+            for (int d = -2; d < 100; d++) {
+                LocalDate day = nov_1_2020.plusDays(d);
+                assertEquals(agenda.eventsInDay(day), bulk.eventsInDay(day),
+                        "Mêmes événements, dans le même ordre, le " + day);
+            }
+            assertEquals(agenda.findByTitle("event 1", TitleMatch.PREFIX_IGNORE_CASE),
+                    bulk.findByTitle("event 1", TitleMatch.PREFIX_IGNORE_CASE));
+            Event candidate = new Event("Candidate", nov_1_2020.atTime(10, 0), Duration.ofHours(3));
+            assertEquals(agenda.findConflicts(candidate), bulk.findConflicts(candidate));
+        }
+    }
+
+    @Test
+    public void smallBatchesAreInsertedOneByOne() {
+        Agenda bulk = new Agenda();
+        bulk.addAll(all.subList(0, 1_900));
+        for (int i = 1_900; i < all.size(); i += 10)
+            bulk.addAll(all.subList(i, i + 10));
+        for (int d = -2; d < 100; d++) {
+            LocalDate day = nov_1_2020.plusDays(d);
+            assertEquals(agenda.eventsInDay(day), bulk.eventsInDay(day), "Mêmes événements le " + day);
+        }
+    }
+}
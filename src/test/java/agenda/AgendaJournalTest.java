@@ -0,0 +1,212 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste la reprise d'un agenda depuis son journal
+ */
+public class AgendaJournalTest {
+    // November 1st, 2020
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    // November 1st, 2020, 22:30
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+
+    // 120 minutes
+    Duration min_120 = Duration.ofMinutes(120);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testReplayRestoresEventsAndChanges() throws IOException {
+        try (AgendaJournal journal = AgendaJournal.open(dir)) {
+            Agenda agenda = journal.agenda();
+            agenda.addEvent(new Event("Simple event", nov_1_2020_22_30, min_120));
+            Event weekly = new Event("Weekly", nov_1_2020_22_30, min_120);
+            agenda.addEvent(weekly);
+            // Modifications faites après l'ajout
+            weekly.setRepetition(ChronoUnit.WEEKS);
+            weekly.addException(nov_1_2020.plusWeeks(1));
+            weekly.addException(nov_1_2020.plusWeeks(2));
+            weekly.removeException(nov_1_2020.plusWeeks(2));
+            weekly.setTermination(5);
+        }
+        try (AgendaJournal journal = AgendaJournal.open(dir)) {
+            List<Event> events = journal.agenda().getEvents();
+            assertEquals(2, events.size(), "Les deux événements doivent être rejoués");
+            Event weekly = events.get(1);
+            assertEquals(ChronoUnit.WEEKS, weekly.getFrequency());
+            assertFalse(weekly.isInDay(nov_1_2020.plusWeeks(1)), "L'exception doit être rejouée");
+            assertTrue(weekly.isInDay(nov_1_2020.plusWeeks(2)), "Le retrait de l'exception doit être rejoué");
+            assertEquals(5, weekly.getNumberOfOccurrences(), "La terminaison doit être rejouée");
+            assertEquals(List.of(weekly), journal.agenda().eventsInDay(nov_1_2020.plusWeeks(4)),
+                    "L'événement rejoué doit être indexé comme répétitif");
+        }
+    }
+
+    @Test
+    public void testChangesAfterReplayAreJournaled() throws IOException {
+        try (AgendaJournal journal = AgendaJournal.open(dir)) {
+            journal.agenda().addEvent(new Event("Daily", nov_1_2020_22_30, min_120));
+        }
+        try (AgendaJournal journal = AgendaJournal.open(dir)) {
+            journal.agenda().getEvents().get(0).setRepetition(ChronoUnit.DAYS);
+        }
+        try (AgendaJournal journal = AgendaJournal.open(dir)) {
+            assertTrue(journal.agenda().getEvents().get(0).isInDay(nov_1_2020.plusDays(3)),
+                    "La répétition ajoutée après une reprise doit être rejouée");
+        }
+    }
+
+    @Test
+    public void testCompactionWritesSnapshot() throws IOException {
+        try (AgendaJournal journal = AgendaJournal.open(dir, Duration.ofMillis(10), 10)) {
+            for (int i = 0; i < 25; i++) {
+                Event e = new Event("Event " + i, nov_1_2020_22_30.plusDays(i), min_120);
+                journal.agenda().addEvent(e);
+                e.setRepetition(ChronoUnit.MONTHS);
+            }
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(2, files.count(), "Seuls le dernier instantané et son journal doivent rester");
+        }
+        try (AgendaJournal journal = AgendaJournal.open(dir)) {
+            List<Event> events = journal.agenda().getEvents();
+            assertEquals(25, events.size());
+            for (int i = 0; i < 25; i++) {
+                assertEquals("Event " + i, events.get(i).getTitle(), "L'ordre des événements doit être conservé");
+                assertEquals(ChronoUnit.MONTHS, events.get(i).getFrequency());
+            }
+        }
+    }
+
+    @Test
+    public void testCompactionInsideABatchKeepsEachEventOnce() throws IOException, InterruptedException {
+        try (AgendaJournal journal = AgendaJournal.open(dir, Duration.ofMillis(10), 4)) {
+            journal.agenda().addEvent(new Event("Before", nov_1_2020_22_30, min_120));
+            List<Event> batch = new ArrayList<>();
+            for (int i = 0; i < 5; i++)
+                batch.add(new Event("Batch " + i, nov_1_2020_22_30.plusDays(i), min_120));
+            // La compaction a lieu pendant les notifications du lot
+            journal.agenda().addAll(batch);
+            journal.agenda().addEvent(new Event("After", nov_1_2020_22_30, min_120));
+            // L'instantané est écrit par le thread du journal, sans attendre sync()
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!Files.exists(dir.resolve("snapshot-1.bin")) && System.nanoTime() < deadline)
+                Thread.sleep(1);
+            assertTrue(Files.exists(dir.resolve("snapshot-1.bin")), "La compaction doit être écrite en arrière-plan");
+        }
+        try (AgendaJournal journal = AgendaJournal.open(dir)) {
+            List<String> titles = journal.agenda().getEvents().stream().map(Event::getTitle).toList();
+            assertEquals(List.of("Before", "Batch 0", "Batch 1", "Batch 2", "Batch 3", "Batch 4", "After"), titles,
+                    "Chaque événement du lot doit être repris une seule fois");
+        }
+    }
+
+    @Test
+    public void testTornTailIsDiscarded() throws IOException {
+        try (AgendaJournal journal = AgendaJournal.open(dir)) {
+            journal.agenda().addEvent(new Event("Kept", nov_1_2020_22_30, min_120));
+            journal.sync();
+            journal.agenda().addEvent(new Event("Torn", nov_1_2020_22_30, min_120));
+        }
+        Path log = dir.resolve("journal-0.log");
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            // Un arrêt brutal au milieu de l'écriture du second enregistrement
+            channel.truncate(channel.size() - 3);
+        }
+        try (AgendaJournal journal = AgendaJournal.open(dir)) {
+            List<Event> events = journal.agenda().getEvents();
+            assertEquals(1, events.size(), "L'enregistrement incomplet doit être ignoré");
+            assertEquals("Kept", events.get(0).getTitle());
+            journal.agenda().addEvent(new Event("After", nov_1_2020_22_30, min_120));
+        }
+        try (AgendaJournal journal = AgendaJournal.open(dir)) {
+            assertEquals(2, journal.agenda().getEvents().size(),
+                    "Le journal doit reprendre après le dernier enregistrement complet");
+        }
+    }
+
+    @Test
+    public void testSyncForcesPendingRecords() throws IOException {
+        try (AgendaJournal journal = AgendaJournal.open(dir, Duration.ofHours(1), 100)) {
+            journal.agenda().addEvent(new Event("Simple event", nov_1_2020_22_30, min_120));
+            assertEquals(0, Files.size(dir.resolve("journal-0.log")), "L'écriture doit être différée");
+            journal.sync();
+            assertTrue(Files.size(dir.resolve("journal-0.log")) > 0, "sync() doit écrire le journal");
+        }
+    }
+
+    @Test
+    public void testReplayRestoresRemovalsAndUpdates() throws IOException {
+        try (AgendaJournal journal = AgendaJournal.open(dir)) {
+            Agenda agenda = journal.agenda();
+            Event removed = new Event("Removed", nov_1_2020_22_30, min_120);
+            Event moved = new Event("Moved", nov_1_2020_22_30, min_120);
+            agenda.addEvent(removed);
+            agenda.addEvent(moved);
+            moved.setRepetition(ChronoUnit.WEEKS);
+            agenda.removeEvent(removed);
+            agenda.updateEvent(moved, "Renamed", nov_1_2020_22_30.plusDays(1), Duration.ofMinutes(30));
+            // Ajouté après le retrait : son id ne doit pas être celui de l'événement retiré
+            agenda.addEvent(new Event("Added", nov_1_2020_22_30, min_120));
+        }
+        try (AgendaJournal journal = AgendaJournal.open(dir)) {
+            Agenda agenda = journal.agenda();
+            assertEquals(List.of("Renamed", "Added"), agenda.getEvents().stream().map(Event::getTitle).toList(),
+                    "Le retrait doit être rejoué");
+            Event moved = agenda.getEvents().get(0);
+            assertEquals(nov_1_2020_22_30.plusDays(1), moved.getStart(), "Le déplacement doit être rejoué");
+            assertEquals(Duration.ofMinutes(30), moved.getDuration());
+            assertEquals(List.of(moved), agenda.eventsInDay(nov_1_2020.plusDays(8)));
+            agenda.clear();
+            agenda.addEvent(new Event("After clear", nov_1_2020_22_30, min_120));
+        }
+        try (AgendaJournal journal = AgendaJournal.open(dir)) {
+            assertEquals(List.of("After clear"),
+                    journal.agenda().getEvents().stream().map(Event::getTitle).toList(), "Le vidage doit être rejoué");
+        }
+    }
+
+    @Test
+    public void testIdsSurviveTwoReopens() throws IOException {
+        try (AgendaJournal journal = AgendaJournal.open(dir)) {
+            Agenda agenda = journal.agenda();
+            Event removed = new Event("Removed", nov_1_2020_22_30, min_120);
+            agenda.addEvent(removed);
+            agenda.addEvent(new Event("Kept", nov_1_2020_22_30, min_120));
+            agenda.removeEvent(removed);
+        }
+        try (AgendaJournal journal = AgendaJournal.open(dir)) {
+            Agenda agenda = journal.agenda();
+            Event kept = agenda.getEvents().get(0);
+            // Le journal rouvert continue : l'id de l'événement gardé ne change pas
+            agenda.updateEvent(kept, "Moved", nov_1_2020_22_30.plusDays(1), min_120);
+            agenda.addEvent(new Event("Added", nov_1_2020_22_30, min_120));
+        }
+        try (AgendaJournal journal = AgendaJournal.open(dir)) {
+            Agenda agenda = journal.agenda();
+            assertEquals(List.of("Moved", "Added"), agenda.getEvents().stream().map(Event::getTitle).toList(),
+                    "Les changements après la réouverture doivent viser les bons événements");
+            assertEquals(nov_1_2020_22_30.plusDays(1), agenda.getEvents().get(0).getStart());
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package agenda;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste les mesures des opérations d'un agenda
+ */
+public class AgendaMetricsTest {
+    // November 1st, 2020
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    // November 1st, 2020, 22:30
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+
+    // 120 minutes
+    Duration min_120 = Duration.ofMinutes(120);
+
+    // Retient les mesures reçues, sous forme de texte
+    static class RecordingMetrics implements AgendaMetrics {
+        final List<String> calls = new ArrayList<>();
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public void eventAdded(long nanos, int events, int simpleEvents, int repeatingEvents) {
+            assertTrue(nanos >= 0);
+            calls.add("eventAdded " + events + " " + simpleEvents + " " + repeatingEvents);
+        }
+
+        @Override
+        public void eventsAdded(long nanos, int added, int events, int simpleEvents, int repeatingEvents) {
+            assertTrue(nanos >= 0);
+            calls.add("eventsAdded " + added + " " + events + " " + simpleEvents + " " + repeatingEvents);
+        }
+
+        @Override
+        public void eventsInDay(long nanos, int scanned, int matched, boolean cached) {
+            assertTrue(nanos >= 0);
+            calls.add("eventsInDay " + scanned + " " + matched + " " + cached);
+        }
+
+        @Override
+        public void findByTitle(long nanos, TitleMatch match, int found) {
+            assertTrue(nanos >= 0);
+            calls.add("findByTitle " + match + " " + found);
+        }
+
+        @Override
+        public void isFreeFor(long nanos, int conflicts) {
+            assertTrue(nanos >= 0);
+            calls.add("isFreeFor " + conflicts);
+        }
+    }
+
+    Agenda agenda;
+    RecordingMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        agenda = new Agenda();
+        metrics = new RecordingMetrics();
+        agenda.setMetrics(metrics);
+    }
+
+    @Test
+    public void operationsAreMeasured() {
+        Event weekly = new Event("Weekly", nov_1_2020_22_30, min_120);
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        agenda.addEvent(weekly);
+        agenda.addEvent(new Event("Simple", nov_1_2020_22_30.plusDays(3), min_120));
+        agenda.eventsInDay(nov_1_2020);
+        agenda.eventsInDay(nov_1_2020.plusDays(4));
+        agenda.findByTitle("Simple");
+        agenda.findByTitle("W", TitleMatch.PREFIX);
+        agenda.isFreeFor(new Event("Overlap", nov_1_2020_22_30.plusDays(7), min_120));
+        assertEquals(List.of(
+                "eventAdded 1 0 1",
+                "eventAdded 2 1 1",
+                "eventsInDay 1 1 false",
+                "eventsInDay 1 1 false",
+                "findByTitle EXACT 1",
+                "findByTitle PREFIX 1",
+                "isFreeFor 1"), metrics.calls);
+    }
+
+    @Test
+    public void batchesAreMeasuredOnce() {
+        Event weekly = new Event("Weekly", nov_1_2020_22_30, min_120);
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        agenda.addAll(List.of(weekly, new Event("Simple", nov_1_2020_22_30, min_120),
+                new Event("Other", nov_1_2020_22_30.plusDays(1), min_120)));
+        assertEquals(List.of("eventsAdded 3 3 2 1"), metrics.calls, "Une seule mesure pour le lot");
+    }
+
+    @Test
+    public void cacheHitsAreMeasured() {
+        agenda.setDayCacheSize(10);
+        agenda.addEvent(new Event("Simple", nov_1_2020_22_30, min_120));
+        agenda.eventsInDay(nov_1_2020);
+        agenda.eventsInDay(nov_1_2020);
+        assertEquals(List.of("eventAdded 1 1 0", "eventsInDay 1 1 false", "eventsInDay 0 1 true"), metrics.calls,
+                "Un jour en cache n'examine aucun événement");
+    }
+
+    @Test
+    public void noopIsNotCalled() {
+        agenda.setMetrics(AgendaMetrics.NOOP);
+        agenda.addEvent(new Event("Simple", nov_1_2020_22_30, min_120));
+        agenda.eventsInDay(nov_1_2020);
+        assertTrue(metrics.calls.isEmpty(), "Les mesures ne sont plus envoyées");
+        assertSame(AgendaMetrics.NOOP, new Agenda().getMetrics(), "Un agenda n'est pas mesuré par défaut");
+        assertThrows(NullPointerException.class, () -> agenda.setMetrics(null));
+    }
+
+    @Test
+    public void concurrentSnapshotsAreMeasured() {
+        ConcurrentAgenda concurrent = new ConcurrentAgenda();
+        concurrent.setMetrics(metrics);
+        concurrent.addEvent(new Event("Simple", nov_1_2020_22_30, min_120));
+        concurrent.eventsInDay(nov_1_2020);
+        assertEquals(List.of("eventsAdded 1 1 1 0", "eventsInDay 1 1 false"), metrics.calls,
+                "La reconstruction et le nouvel instantané sont mesurés");
+    }
+
+    @Test
+    public void jfrMetricsAreOffWithoutRecording() {
+        JfrAgendaMetrics metrics = new JfrAgendaMetrics();
+        assertFalse(metrics.isEnabled(), "Sans enregistrement, l'agenda ne mesure rien");
+        try (Recording recording = new Recording()) {
+            recording.enable("agenda.IsFreeFor");
+            recording.start();
+            assertTrue(metrics.isEnabled(), "Un enregistrement en cours active les mesures");
+            recording.stop();
+        }
+        assertFalse(metrics.isEnabled(), "Les mesures s'arrêtent avec l'enregistrement");
+    }
+
+    @Test
+    public void jfrEventsAreRecorded(@TempDir Path dir) throws Exception {
+        agenda.setMetrics(new JfrAgendaMetrics());
+        Path file = dir.resolve("agenda.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("agenda.EventsInDay");
+            recording.disable("agenda.IsFreeFor");
+            recording.start();
+            agenda.addEvent(new Event("Simple", nov_1_2020_22_30, min_120));
+            agenda.eventsInDay(nov_1_2020);
+            agenda.isFreeFor(new Event("Overlap", nov_1_2020_22_30, min_120));
+            recording.stop();
+            recording.dump(file);
+        }
+        List<String> names = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            names.add(event.getEventType().getName());
+            if (event.getEventType().getName().equals("agenda.EventsInDay"))
+                assertEquals(1, event.getInt("matched"));
+        }
+        assertEquals(List.of("agenda.EventAdded", "agenda.EventsInDay"), names,
+                "Les événements désactivés ne sont pas enregistrés");
+    }
+}
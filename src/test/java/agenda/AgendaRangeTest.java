@@ -0,0 +1,132 @@
+package agenda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste le calcul des occurrences de l'agenda sur une plage de jours
+ */
+public class AgendaRangeTest {
+    // November 1st, 2020
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    // November 1st, 2020, 22:30
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+
+    // 120 minutes
+    Duration min_120 = Duration.ofMinutes(120);
+
+    Agenda agenda;
+
+    Event simple;
+
+    Event weekly;
+
+    Event neverEnding;
+
+    @BeforeEach
+    void setUp() {
+        simple = new Event("Simple event", nov_1_2020_22_30, min_120);
+
+        weekly = new Event("Weekly", nov_1_2020_22_30.minusHours(12), min_120);
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        weekly.setTermination(10);
+        weekly.addException(nov_1_2020.plusWeeks(1));
+
+        neverEnding = new Event("Never Ending", nov_1_2020_22_30, min_120);
+        neverEnding.setRepetition(ChronoUnit.DAYS);
+
+        agenda = new Agenda();
+        agenda.addEvent(simple);
+        agenda.addEvent(weekly);
+        agenda.addEvent(neverEnding);
+    }
+
+    @Test
+    public void occurrencesOfAWeek() {
+        List<Occurrence> week = agenda.eventsBetween(nov_1_2020, nov_1_2020.plusDays(6)).toList();
+        assertEquals(1 + 1 + 7, week.size(),
+                "1 simple, 1 hebdomadaire et 7 quotidiens");
+        assertEquals(new Occurrence(weekly, nov_1_2020.atTime(10, 30)), week.get(0),
+                "L'occurrence la plus tôt vient en premier");
+        assertEquals(nov_1_2020_22_30.plus(min_120), week.get(1).end(),
+                "La fin d'une occurrence tient compte de la durée");
+    }
+
+    @Test
+    public void occurrencesAreSortedByStart() {
+        List<Occurrence> all = agenda.eventsBetween(nov_1_2020.minusDays(3), nov_1_2020.plusDays(90)).toList();
+        for (int i = 1; i < all.size(); i++)
+            assertFalse(all.get(i).start().isBefore(all.get(i - 1).start()),
+                    "Les occurrences sont triées par début");
+    }
+
+    @Test
+    public void rangeMatchesEventsInDay() {
+        LocalDate from = nov_1_2020.minusDays(3);
+        LocalDate to = nov_1_2020.plusDays(90);
+        List<Occurrence> all = agenda.eventsBetween(from, to).toList();
+        long repeatingOccurrences = all.stream().filter(o -> o.event().hasRepetition()).count();
+        long expected = 0;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1))
+            expected += agenda.eventsInDay(day).stream().filter(Event::hasRepetition).count();
+        assertEquals(expected, repeatingOccurrences,
+                "Autant d'occurrences que de jours où les événements répétitifs ont lieu");
+        assertFalse(all.stream().anyMatch(o -> o.start().toLocalDate().equals(nov_1_2020.plusWeeks(1))
+                && o.event() == weekly), "Les exceptions sont ignorées");
+    }
+
+    @Test
+    public void simpleEventOverlappingTheRange() {
+        List<Occurrence> nextDay = agenda.eventsBetween(nov_1_2020.plusDays(1), nov_1_2020.plusDays(1)).toList();
+        assertTrue(nextDay.contains(new Occurrence(simple, nov_1_2020_22_30)),
+                "Un événement qui déborde sur la plage en fait partie");
+    }
+
+    @Test
+    public void rangeIsLazy() {
+        List<Occurrence> first = agenda.eventsBetween(nov_1_2020, LocalDate.of(9999, 12, 31))
+                .limit(3).toList();
+        assertEquals(3, first.size(), "Une plage immense se parcourt sans tout calculer");
+    }
+
+    @Test
+    public void simpleEventsAreMergedInOrder() {
+        Agenda big = new Agenda();
+        Random random = new Random(3);
+        List<Occurrence> expected = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            // Des débuts partagés, et des fractions de seconde dans une même seconde
+            LocalDateTime start = nov_1_2020.atStartOfDay().plusMinutes(15L * random.nextInt(20_000))
+                    .plusNanos(random.nextInt(3) * 1_000_000L);
+            Event e = new Event("Event " + i, start, Duration.ofMinutes(1 + random.nextInt(600)));
+            big.addEvent(e);
+            if (!start.toLocalDate().isBefore(nov_1_2020.plusDays(30))
+                    || !e.end().toLocalDate().isBefore(nov_1_2020.plusDays(30)))
+                if (!start.toLocalDate().isAfter(nov_1_2020.plusDays(120)))
+                    expected.add(new Occurrence(e, start));
+        }
+        // Tri stable : à début égal, l'ordre d'ajout
+        expected.sort(Comparator.comparing(Occurrence::start));
+        assertEquals(expected, big.eventsBetween(nov_1_2020.plusDays(30), nov_1_2020.plusDays(120)).toList(),
+                "Toutes les occurrences de la plage, triées par début puis par ajout");
+    }
+
+    @Test
+    public void invalidRange() {
+        assertThrows(IllegalArgumentException.class,
+                () -> agenda.eventsBetween(nov_1_2020, nov_1_2020.minusDays(1)),
+                "La plage doit être ordonnée");
+    }
+}
@@ -0,0 +1,124 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste le stockage des agendas de nombreux propriétaires
+ */
+public class AgendaStoreTest {
+    // November 1st, 2020
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    // November 1st, 2020, 22:30
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+
+    // 120 minutes
+    Duration min_120 = Duration.ofMinutes(120);
+
+    @TempDir
+    Path dir;
+
+    // Le budget d'un agenda de deux événements, sur une seule bande
+    long twoAgendas = 2 * (AgendaStore.AGENDA_BYTES + 2 * AgendaStore.EVENT_BYTES);
+
+    private void addTwoEvents(AgendaStore store, String owner) throws IOException {
+        store.update(owner, agenda -> {
+            agenda.addEvent(new Event(owner, nov_1_2020_22_30, min_120));
+            Event weekly = new Event(owner + " weekly", nov_1_2020_22_30, min_120);
+            weekly.setRepetition(ChronoUnit.WEEKS);
+            weekly.addException(nov_1_2020.plusWeeks(1));
+            agenda.addEvent(weekly);
+        });
+    }
+
+    @Test
+    public void coldAgendasAreEvictedAndReloaded() throws IOException {
+        try (AgendaStore store = new AgendaStore(dir, twoAgendas, 1)) {
+            addTwoEvents(store, "alice");
+            addTwoEvents(store, "bob");
+            store.read("alice", Agenda::getEvents);
+            assertEquals(new AgendaStore.Stats(1, 2, 0, 2, twoAgendas), store.stats(),
+                    "Chaque agenda est créé, puis retrouvé en mémoire");
+            addTwoEvents(store, "carol");
+            assertEquals(1, store.stats().evictions(), "Bob, le plus froid, est évincé");
+            assertEquals(2, store.stats().residentAgendas());
+            assertEquals(List.of("bob", "bob weekly"),
+                    store.read("bob", a -> a.getEvents().stream().map(Event::getTitle).toList()),
+                    "L'agenda évincé est relu depuis le disque");
+            assertEquals(2, store.stats().evictions(), "Alice, devenue la plus froide, est évincée à son tour");
+            boolean excepted = store.read("alice", a -> !a.getEvents().get(1).isInDay(nov_1_2020.plusWeeks(1)));
+            assertTrue(excepted, "Les exceptions sont gardées");
+        }
+    }
+
+    @Test
+    public void changesSurviveReopening() throws IOException {
+        try (AgendaStore store = new AgendaStore(dir, 1 << 20)) {
+            addTwoEvents(store, "alice");
+            addTwoEvents(store, "élise/../étrange");
+        }
+        try (AgendaStore store = new AgendaStore(dir, 1 << 20)) {
+            int size = store.read("élise/../étrange", a -> a.getEvents().size());
+            assertEquals(2, size, "Tout identifiant donne un nom de fichier");
+            int inDay = store.read("alice", a -> a.eventsInDay(nov_1_2020.plusWeeks(2)).size());
+            assertEquals(1, inDay);
+            store.delete("alice");
+            assertTrue(store.read("alice", Agenda::getEvents).isEmpty(), "L'agenda supprimé est vide");
+        }
+    }
+
+    @Test
+    public void unknownOwnersHaveAnEmptyAgenda() throws IOException {
+        try (AgendaStore store = new AgendaStore(dir, 1 << 20)) {
+            assertTrue(store.read("nobody", Agenda::getEvents).isEmpty());
+            assertEquals(1, store.stats().misses());
+        }
+        assertEquals(0, dir.toFile().list().length, "Un agenda seulement lu n'est pas écrit");
+    }
+
+    @Test
+    public void ownersAreServedConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (AgendaStore store = new AgendaStore(dir, 20 * twoAgendas, 8)) {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        String owner = "owner " + (thread * 7 + i) % 50;
+                        try {
+                            store.update(owner, agenda -> agenda.addEvent(new Event(owner, nov_1_2020_22_30, min_120)));
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> task : tasks)
+                task.get();
+            int total = 0;
+            for (int i = 0; i < 50; i++)
+                total += store.read("owner " + i, a -> a.getEvents().size());
+            assertEquals(8 * 200, total, "Aucun ajout n'est perdu par les évictions");
+            assertTrue(store.stats().evictions() > 0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
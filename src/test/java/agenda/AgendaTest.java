@@ -136,13 +136,13 @@ public class AgendaTest {
     }
 
     @Test
-    public void testIsFreeForIgnoresRepeatingEvents() {
+    public void testIsFreeForChecksRepeatingEvents() {
         LocalDateTime nearRepeatEvent = LocalDateTime.of(2020, 11, 8, 22, 30);
         Duration duration = Duration.ofMinutes(60);
         Event event = new Event("Test event", nearRepeatEvent, duration);
 
-        assertTrue(agenda.isFreeFor(event),
-                "Les événements répétitifs sont ignorés ");
+        assertFalse(agenda.isFreeFor(event),
+                "Les occurrences des événements répétitifs sont des conflits");
     }
 
     @Test
@@ -0,0 +1,187 @@
+package agenda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste le retrait et la modification des événements d'un agenda
+ */
+public class AgendaUpdateTest {
+    // November 1st, 2020
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    // November 1st, 2020, 22:30
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+
+    // 120 minutes
+    Duration min_120 = Duration.ofMinutes(120);
+
+    Agenda agenda;
+    Event simple;
+    Event weekly;
+
+    @BeforeEach
+    void setUp() {
+        agenda = new Agenda();
+        simple = new Event("Simple event", nov_1_2020_22_30, min_120);
+        weekly = new Event("Weekly event", nov_1_2020_22_30, min_120);
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        agenda.addEvent(simple);
+        agenda.addEvent(weekly);
+    }
+
+    @Test
+    public void removedEventsLeaveEveryIndex() {
+        Event other = new Event("Other", nov_1_2020_22_30, min_120);
+        agenda.addEvent(other);
+        assertTrue(agenda.removeEvent(simple));
+        assertFalse(agenda.removeEvent(simple), "Un événement ne peut être retiré qu'une fois");
+        assertTrue(agenda.removeEvent(weekly));
+        assertEquals(List.of(other), agenda.getEvents());
+        assertEquals(List.of(other), agenda.eventsInDay(nov_1_2020));
+        assertTrue(agenda.eventsInDay(nov_1_2020.plusWeeks(1)).isEmpty(), "L'événement répétitif est retiré");
+        assertTrue(agenda.findByTitle("Simple event").isEmpty());
+        assertTrue(agenda.findByTitle("weekly", TitleMatch.PREFIX_IGNORE_CASE).isEmpty());
+        assertEquals(List.of(other), agenda.findConflicts(new Event("New", nov_1_2020_22_30, min_120)));
+        // Un événement retiré ne suit plus l'agenda
+        weekly.setRepetition(ChronoUnit.DAYS);
+        assertTrue(agenda.eventsInDay(nov_1_2020.plusDays(2)).isEmpty());
+    }
+
+    @Test
+    public void eventsAreAddedOnlyOnce() {
+        assertThrows(IllegalArgumentException.class, () -> agenda.addEvent(simple),
+                "Un événement n'est ajouté qu'une fois");
+        Event other = new Event("Other", nov_1_2020_22_30, min_120);
+        assertThrows(IllegalArgumentException.class, () -> agenda.addAll(List.of(other, other)),
+                "Un lot ne contient un événement qu'une fois");
+        assertThrows(IllegalArgumentException.class, () -> agenda.addAll(List.of(other, weekly)),
+                "Un lot ne contient pas d'événement de l'agenda");
+        assertEquals(List.of(simple, weekly), agenda.getEvents(), "Un lot refusé n'ajoute rien");
+        agenda.addEvent(other);
+        assertTrue(agenda.removeEvent(simple));
+        assertEquals(List.of(weekly, other), agenda.getEvents());
+        assertEquals(List.of(other), agenda.eventsInDay(nov_1_2020.plusDays(1)), "Retiré de l'arbre");
+        assertTrue(agenda.findByTitle("Simple event").isEmpty(), "Retiré de l'index des titres");
+        assertEquals(List.of(other), agenda.findByTitle("Other"));
+    }
+
+    @Test
+    public void removalsStayCheapWithSharedStartsAndTitles() {
+        agenda.clear();
+        List<Event> expected = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            Event e = new Event("Same", nov_1_2020_22_30, min_120);
+            agenda.addEvent(e);
+            expected.add(e);
+        }
+        Random random = new Random(7);
+        for (int i = 0; i < 1_500; i++)
+            assertTrue(agenda.removeEvent(expected.remove(random.nextInt(expected.size()))));
+        assertEquals(expected, agenda.findByTitle("Same"), "Les événements restants, dans l'ordre d'ajout");
+        assertEquals(expected, agenda.eventsInDay(nov_1_2020), "Même début : dans l'ordre d'ajout");
+        assertEquals(expected, agenda.getEvents());
+    }
+
+    @Test
+    public void removalsCompactTheEventList() {
+        for (int i = 0; i < 10_000; i++) {
+            Event e = new Event("Event " + i, nov_1_2020_22_30.plusHours(i), min_120);
+            agenda.addEvent(e);
+            agenda.removeEvent(e);
+        }
+        assertTrue(agenda.slotCount() <= 2 * 2 + 1, "Les places vides ne s'accumulent pas : " + agenda.slotCount());
+        assertEquals(List.of(simple, weekly), agenda.getEvents());
+    }
+
+    @Test
+    public void eventsKeepTheirOrderAfterRemovals() {
+        List<Event> expected = new ArrayList<>(agenda.getEvents());
+        for (int i = 0; i < 20; i++) {
+            Event e = new Event("Event " + i, nov_1_2020_22_30.plusHours(i), min_120);
+            agenda.addEvent(e);
+            expected.add(e);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 10; i++) {
+            Event removed = expected.remove(random.nextInt(expected.size()));
+            agenda.removeEvent(removed);
+            assertEquals(expected, agenda.getEvents(), "Les événements restants gardent leur ordre");
+        }
+        Event last = new Event("Last", nov_1_2020_22_30, min_120);
+        agenda.addEvent(last);
+        expected.add(last);
+        assertEquals(expected, agenda.getEvents());
+        agenda.removeEvent(expected.get(0));
+        assertEquals(expected.subList(1, expected.size()), agenda.getEvents());
+    }
+
+    @Test
+    public void updatedSimpleEventIsReindexed() {
+        agenda.updateEvent(simple, "Moved event", nov_1_2020_22_30.plusDays(3), min_120);
+        assertTrue(agenda.eventsInDay(nov_1_2020.plusDays(1)).isEmpty(),
+                "L'événement n'est plus à son ancienne date");
+        assertEquals(List.of(simple), agenda.eventsInDay(nov_1_2020.plusDays(3)));
+        assertEquals(List.of(simple), agenda.eventsInDay(nov_1_2020.plusDays(4)), "Il déborde sur le lendemain");
+        assertTrue(agenda.findByTitle("Simple event").isEmpty());
+        assertEquals(List.of(simple), agenda.findByTitle("moved", TitleMatch.PREFIX_IGNORE_CASE));
+        assertEquals(List.of(simple, weekly), agenda.getEvents(), "L'événement garde sa place");
+    }
+
+    @Test
+    public void updatedRepeatingEventMovesItsOccurrences() {
+        weekly.addException(nov_1_2020.plusWeeks(2).plusDays(2));
+        weekly.setTermination(4);
+        // Du dimanche au mardi suivant
+        agenda.updateEvent(weekly, "Weekly event", nov_1_2020_22_30.plusDays(2), Duration.ofMinutes(30));
+        assertTrue(agenda.eventsInDay(nov_1_2020.plusWeeks(1)).isEmpty(), "Plus d'occurrence le dimanche");
+        assertEquals(List.of(weekly), agenda.eventsInDay(nov_1_2020.plusWeeks(1).plusDays(2)));
+        assertTrue(agenda.eventsInDay(nov_1_2020.plusWeeks(2).plusDays(2)).isEmpty(), "L'exception est gardée");
+        assertEquals(4, weekly.getNumberOfOccurrences(), "Le nombre d'occurrences est gardé");
+        assertEquals(nov_1_2020.plusWeeks(3).plusDays(2), weekly.getTerminationDate(),
+                "La terminaison est recalculée depuis le nouveau début");
+        assertTrue(agenda.eventsInDay(nov_1_2020.plusWeeks(4).plusDays(2)).isEmpty());
+    }
+
+    @Test
+    public void eventsOfAnotherAgendaCannotBeUpdated() {
+        Event stranger = new Event("Stranger", nov_1_2020_22_30, min_120);
+        assertThrows(IllegalArgumentException.class,
+                () -> agenda.updateEvent(stranger, "Stranger", nov_1_2020_22_30, min_120));
+        assertFalse(agenda.removeEvent(stranger));
+    }
+
+    @Test
+    public void clearedAgendaIsEmpty() {
+        agenda.clear();
+        assertTrue(agenda.getEvents().isEmpty());
+        assertTrue(agenda.eventsInDay(nov_1_2020).isEmpty());
+        assertTrue(agenda.findByTitle("Simple event").isEmpty());
+        assertTrue(agenda.isFreeFor(new Event("New", nov_1_2020_22_30, min_120)));
+        agenda.addEvent(simple);
+        assertEquals(List.of(simple), agenda.eventsInDay(nov_1_2020));
+    }
+
+    @Test
+    public void concurrentAgendaRemovesAndUpdates() {
+        ConcurrentAgenda shared = new ConcurrentAgenda();
+        shared.addEvent(simple);
+        shared.addEvent(weekly);
+        Event moved = shared.updateEvent(simple, "Moved", nov_1_2020_22_30.plusDays(3), min_120);
+        assertNotSame(simple, moved, "L'événement publié n'est pas modifié");
+        assertEquals(nov_1_2020_22_30, simple.getStart());
+        shared.removeEvent(weekly);
+        assertEquals(List.of(moved), shared.snapshot().getEvents());
+        assertEquals(List.of(moved), shared.eventsInDay(nov_1_2020.plusDays(3)));
+    }
+}
@@ -0,0 +1,129 @@
+package agenda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste le stockage des événements en colonnes
+ */
+public class ColumnarAgendaTest {
+    // November 1st, 2020
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    // November 1st, 2020, 22:30
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+
+    // 120 minutes
+    Duration min_120 = Duration.ofMinutes(120);
+
+    static final ChronoUnit[] FREQUENCIES = { ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS, ChronoUnit.YEARS };
+
+    List<Event> events;
+    ColumnarAgenda columnar;
+
+    @BeforeEach
+    void setUp() {
+        // Des événements aléatoires, répétitifs ou non, avec exceptions et terminaisons
+        Random random = new Random(42);
+        events = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            LocalDateTime start = nov_1_2020.plusDays(random.nextInt(90)).atTime(random.nextInt(24), 15 * random.nextInt(4));
+            Event e = new Event(random.nextInt(4) == 0 ? null : "Event " + random.nextInt(50), start,
+                    Duration.ofMinutes(30 + random.nextInt(3000)));
+            if (random.nextBoolean()) {
+                ChronoUnit frequency = FREQUENCIES[random.nextInt(FREQUENCIES.length)];
+                e.setRepetition(frequency);
+                for (int k = random.nextInt(4); k > 0; k--)
+                    e.addException(start.toLocalDate().plus(random.nextInt(20), frequency));
+                if (random.nextBoolean())
+                    e.setTermination(start.toLocalDate().plusDays(random.nextInt(200)));
+                else if (random.nextBoolean())
+                    e.setTermination(1 + random.nextInt(10));
+            }
+            events.add(e);
+        }
+        columnar = new ColumnarAgenda(4);
+        columnar.addAll(events);
+    }
+
+    @Test
+    public void matchesEventIsInDay() {
+        assertEquals(events.size(), columnar.size());
+        for (LocalDate day = nov_1_2020.minusDays(3); day.isBefore(nov_1_2020.plusDays(400)); day = day.plusDays(1)) {
+            for (int i = 0; i < events.size(); i++)
+                assertEquals(events.get(i).isInDay(day), columnar.isInDay(i, day),
+                        "Même réponse que isInDay pour " + events.get(i) + " le " + day);
+        }
+    }
+
+    @Test
+    public void answersLikeAnIndexedAgenda() {
+        EventStore indexed = new Agenda();
+        indexed.addAll(events);
+        EventStore compact = columnar;
+        for (LocalDate day = nov_1_2020; day.isBefore(nov_1_2020.plusDays(120)); day = day.plusDays(1))
+            // L'ordre des événements d'un jour diffère : comparés triés
+            assertEquals(titles(indexed.eventsInDay(day)).stream().sorted().toList(),
+                    titles(compact.eventsInDay(day)).stream().sorted().toList(), "Le " + day);
+        for (String title : new String[] { "Event 7", "Event 49", null, "Missing" })
+            assertEquals(titles(indexed.findByTitle(title)), titles(compact.findByTitle(title)),
+                    "Les événements de titre " + title + ", dans l'ordre d'ajout");
+    }
+
+    private static List<String> titles(List<Event> events) {
+        return events.stream().map(e -> e.getTitle() + " " + e.getStart()).toList();
+    }
+
+    @Test
+    public void viewsEqualTheAddedEvents() {
+        for (int i = 0; i < events.size(); i++) {
+            Event e = events.get(i);
+            Event view = columnar.event(i);
+            assertEquals(e.getTitle(), view.getTitle());
+            assertEquals(e.getStart(), view.getStart());
+            assertEquals(e.getDuration(), view.getDuration());
+            assertEquals(e.getFrequency(), view.getFrequency());
+            assertEquals(e.getTerminationDate(), view.getTerminationDate(), "La terminaison est conservée");
+            for (LocalDate day = nov_1_2020; day.isBefore(nov_1_2020.plusDays(200)); day = day.plusDays(1))
+                assertEquals(e.isInDay(day), view.isInDay(day), "Les exceptions sont conservées");
+        }
+    }
+
+    @Test
+    public void eventsInDayListsViewsInOrder() {
+        LocalDate day = nov_1_2020.plusDays(45);
+        List<String> expected = events.stream().filter(e -> e.isInDay(day)).map(Event::toString).toList();
+        assertEquals(expected, columnar.eventsInDay(day).stream().map(Event::toString).toList());
+    }
+
+    @Test
+    public void nanosecondsAreKept() {
+        ColumnarAgenda agenda = new ColumnarAgenda();
+        agenda.addEvent(new Event("Simple event", nov_1_2020_22_30, min_120));
+        // Fin à minuit et une demi-seconde : touche le lendemain
+        Event precise = new Event("Precise", nov_1_2020.atTime(23, 59, 59, 600_000_000), Duration.ofMillis(600));
+        agenda.addEvent(precise);
+        assertEquals(nov_1_2020_22_30, agenda.event(0).getStart());
+        assertEquals(precise.getStart(), agenda.event(1).getStart());
+        assertEquals(precise.getDuration(), agenda.event(1).getDuration());
+        assertTrue(agenda.isInDay(1, nov_1_2020.plusDays(1)), "Comme isInDay, l'événement finit le lendemain");
+    }
+
+    @Test
+    public void viewsDoNotChangeTheAgenda() {
+        ColumnarAgenda agenda = new ColumnarAgenda();
+        agenda.addEvent(new Event("Simple event", nov_1_2020_22_30, min_120));
+        agenda.event(0).setRepetition(ChronoUnit.DAYS);
+        assertFalse(agenda.isInDay(0, nov_1_2020.plusDays(5)), "Une vue est une copie");
+    }
+}
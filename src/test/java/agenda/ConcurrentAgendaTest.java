@@ -0,0 +1,147 @@
+package agenda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste l'agenda partagé entre plusieurs threads
+ */
+public class ConcurrentAgendaTest {
+    // November 1st, 2020
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    // November 1st, 2020, 22:30
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+
+    // 120 minutes
+    Duration min_120 = Duration.ofMinutes(120);
+
+    ConcurrentAgenda agenda;
+
+    Event neverEnding;
+
+    @BeforeEach
+    void setUp() {
+        neverEnding = new Event("Never Ending", nov_1_2020_22_30, min_120);
+        neverEnding.setRepetition(ChronoUnit.DAYS);
+        agenda = new ConcurrentAgenda();
+        agenda.addEvent(neverEnding);
+    }
+
+    @Test
+    public void exceptionReplacesTheEvent() {
+        Agenda before = agenda.snapshot();
+        Event modified = agenda.addException(neverEnding, nov_1_2020.plusDays(1));
+        assertNotSame(neverEnding, modified, "L'événement modifié est une copie");
+        assertTrue(neverEnding.isInDay(nov_1_2020.plusDays(1)), "L'événement publié n'est pas modifié");
+        assertEquals(List.of(neverEnding), before.eventsInDay(nov_1_2020.plusDays(1)),
+                "L'ancien instantané n'est pas modifié");
+        assertTrue(agenda.eventsInDay(nov_1_2020.plusDays(1)).isEmpty(), "Le nouvel instantané a l'exception");
+        Event terminated = agenda.setTermination(modified, 3);
+        assertEquals(3, terminated.getNumberOfOccurrences(), "La copie peut encore être modifiée");
+        assertEquals(List.of(terminated), agenda.snapshot().getEvents(), "Un seul événement dans l'agenda");
+    }
+
+    @Test
+    public void batchOfChanges() {
+        Event weekly = new Event("Weekly", nov_1_2020_22_30, min_120);
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        agenda.update(batch -> {
+            batch.addEvent(weekly);
+            assertSame(weekly, batch.addException(weekly, nov_1_2020.plusWeeks(1)),
+                    "Un événement du lot n'est pas copié");
+            Event copy = batch.setTermination(neverEnding, nov_1_2020.plusDays(10));
+            assertSame(copy, batch.addException(neverEnding, nov_1_2020.plusDays(2)),
+                    "Un événement n'est copié qu'une fois par lot");
+        });
+        assertEquals(2, agenda.snapshot().getEvents().size(), "2 événements");
+        assertTrue(agenda.eventsInDay(nov_1_2020.plusDays(2)).isEmpty(), "Exception à J+2");
+        assertTrue(agenda.eventsInDay(nov_1_2020.plusDays(11)).isEmpty(), "Terminé à J+10");
+    }
+
+    @Test
+    public void snapshotsAreReadOnly() {
+        Agenda snapshot = agenda.snapshot();
+        Event other = new Event("Other", nov_1_2020_22_30, min_120);
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.addEvent(other),
+                "Un instantané ne reçoit pas d'événement");
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.addAll(List.of(other)),
+                "Un instantané ne reçoit pas de lot");
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.removeEvent(neverEnding),
+                "Un instantané ne perd pas d'événement");
+        assertThrows(UnsupportedOperationException.class,
+                () -> snapshot.updateEvent(neverEnding, "Moved", nov_1_2020_22_30, min_120),
+                "Un instantané ne modifie pas d'événement");
+        assertThrows(UnsupportedOperationException.class, snapshot::clear, "Un instantané n'est pas vidé");
+        assertEquals(List.of(neverEnding), agenda.snapshot().getEvents(), "L'instantané n'a pas changé");
+        assertEquals("Never Ending", neverEnding.getTitle(), "L'événement publié n'a pas changé");
+        assertThrows(UnsupportedOperationException.class, () -> new ConcurrentAgenda().snapshot().addEvent(other),
+                "Le premier instantané est aussi en lecture seule");
+    }
+
+    @Test
+    public void unknownEvent() {
+        Event other = new Event("Other", nov_1_2020_22_30, min_120);
+        assertThrows(IllegalArgumentException.class, () -> agenda.addException(other, nov_1_2020),
+                "L'événement doit être dans l'agenda");
+    }
+
+    @Test
+    public void readersAndWritersStress() throws Exception {
+        int writers = 4;
+        int eventsPerWriter = 100;
+        int readers = 4;
+        ExecutorService pool = Executors.newFixedThreadPool(writers + readers);
+        AtomicBoolean done = new AtomicBoolean();
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int r = 0; r < readers; r++) {
+            tasks.add(pool.submit(() -> {
+                int lastSeen = 0;
+                while (!done.get()) {
+                    int seen = agenda.findByTitle("Writer", TitleMatch.PREFIX).size();
+                    assertTrue(seen >= lastSeen, "Un lecteur ne voit jamais disparaître d'événement");
+                    lastSeen = seen;
+                    for (Event e : agenda.eventsInDay(nov_1_2020.plusDays(seen % 30)))
+                        assertNotNull(e.getTitle());
+                    agenda.isFreeFor(new Event("Probe", nov_1_2020.atTime(12, 0), min_120));
+                }
+                return null;
+            }));
+        }
+        CountDownLatch writersDone = new CountDownLatch(writers);
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            tasks.add(pool.submit(() -> {
+                for (int i = 0; i < eventsPerWriter; i++) {
+                    Event e = new Event("Writer " + writer + " #" + i,
+                            nov_1_2020.plusDays(i % 30).atTime(writer, 0), Duration.ofMinutes(30));
+                    e.setRepetition(ChronoUnit.WEEKS);
+                    agenda.addEvent(e);
+                    agenda.addException(e, e.getStart().toLocalDate().plusWeeks(1));
+                }
+                writersDone.countDown();
+                return null;
+            }));
+        }
+        assertTrue(writersDone.await(60, TimeUnit.SECONDS), "Les écrivains terminent");
+        done.set(true);
+        for (Future<?> task : tasks)
+            task.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+        assertEquals(writers * eventsPerWriter, agenda.findByTitle("Writer", TitleMatch.PREFIX).size(),
+                "Aucune écriture n'est perdue");
+        for (Event e : agenda.findByTitle("Writer", TitleMatch.PREFIX))
+            assertFalse(e.isInDay(e.getStart().toLocalDate().plusWeeks(1)), "Chaque exception est appliquée");
+    }
+}
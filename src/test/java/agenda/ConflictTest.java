@@ -0,0 +1,120 @@
+package agenda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste la détection des conflits, événements répétitifs compris
+ */
+public class ConflictTest {
+    // November 1st, 2020
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    // November 1st, 2020, 22:30
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+
+    // 120 minutes
+    Duration min_120 = Duration.ofMinutes(120);
+
+    Agenda agenda;
+
+    Event simple;
+
+    Event neverEnding;
+
+    @BeforeEach
+    void setUp() {
+        simple = new Event("Simple event", nov_1_2020.atTime(10, 0), Duration.ofHours(2));
+
+        neverEnding = new Event("Never Ending", nov_1_2020_22_30, min_120);
+        neverEnding.setRepetition(ChronoUnit.DAYS);
+        neverEnding.addException(nov_1_2020.plusDays(5));
+
+        agenda = new Agenda();
+        agenda.addEvent(simple);
+        agenda.addEvent(neverEnding);
+    }
+
+    @Test
+    public void occurrenceSpillingOverMidnight() {
+        Event night = new Event("Night", nov_1_2020.plusDays(3).atTime(0, 0), Duration.ofMinutes(15));
+        assertEquals(List.of(neverEnding), agenda.findConflicts(night),
+                "L'occurrence de la veille déborde après minuit");
+    }
+
+    @Test
+    public void eventDoesNotConflictWithItself() {
+        assertTrue(agenda.isFreeFor(simple), "Un événement de l'agenda ne se chevauche pas lui-même");
+        assertTrue(agenda.findConflicts(neverEnding).isEmpty(), "Ni ses propres occurrences");
+        Event overlapping = new Event("Overlapping", nov_1_2020.atTime(11, 0), Duration.ofHours(1));
+        agenda.addEvent(overlapping);
+        assertFalse(agenda.isFreeFor(simple), "Les autres événements restent des conflits");
+        assertEquals(List.of(overlapping), agenda.findConflicts(simple));
+    }
+
+    @Test
+    public void exceptionIsNotAConflict() {
+        Event evening = new Event("Evening", nov_1_2020.plusDays(5).atTime(23, 0), Duration.ofMinutes(15));
+        assertTrue(agenda.isFreeFor(evening), "Pas d'occurrence le jour d'une exception");
+    }
+
+    @Test
+    public void storedEventIsNotInConflictWithItself() {
+        assertTrue(agenda.isFreeFor(simple), "Un événement ne se chevauche pas lui-même");
+    }
+
+    @Test
+    public void candidatesConflictWithEachOther() {
+        Event a = new Event("A", nov_1_2020.plusDays(1).atTime(8, 0), Duration.ofHours(1));
+        Event b = new Event("B", nov_1_2020.plusDays(1).atTime(8, 30), Duration.ofHours(1));
+        Event c = new Event("C", nov_1_2020.plusDays(1).atTime(12, 0), Duration.ofHours(1));
+        Map<Event, List<Event>> found = agenda.findConflicts(List.of(a, b, c));
+        assertEquals(List.of(a, b), new ArrayList<>(found.keySet()), "Seuls A et B sont en conflit");
+        assertEquals(List.of(b), found.get(a), "A chevauche B");
+        assertEquals(List.of(a), found.get(b), "B chevauche A");
+    }
+
+    @Test
+    public void storedEventStartingAfterTheLastCandidate() {
+        Event longOne = new Event("Long", nov_1_2020.atTime(9, 0), Duration.ofHours(4));
+        assertEquals(List.of(simple), agenda.findConflicts(List.of(longOne)).get(longOne),
+                "Un événement qui commence après le candidat le chevauche quand même");
+    }
+
+    @Test
+    public void batchMatchesSingleChecks() {
+        Random random = new Random(2020);
+        Agenda big = new Agenda();
+        for (int i = 0; i < 500; i++) {
+            Event e = new Event("Event " + i, nov_1_2020.atStartOfDay().plusMinutes(15L * random.nextInt(4 * 24 * 60)),
+                    Duration.ofMinutes(15L * (1 + random.nextInt(16))));
+            if (i % 10 == 0)
+                e.setRepetition(i % 20 == 0 ? ChronoUnit.WEEKS : ChronoUnit.MONTHS);
+            big.addEvent(e);
+        }
+        List<Event> candidates = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+            candidates.add(new Event("Candidate " + i,
+                    nov_1_2020.atStartOfDay().plusMinutes(15L * random.nextInt(5 * 24 * 60)),
+                    Duration.ofMinutes(15L * (1 + random.nextInt(8)))));
+        Map<Event, List<Event>> found = big.findConflicts(candidates);
+        for (Event c : candidates) {
+            List<Event> expected = big.findConflicts(c);
+            List<Event> others = found.getOrDefault(c, List.of()).stream()
+                    .filter(e -> !candidates.contains(e)).toList();
+            assertEquals(expected.size(), others.size(), "Mêmes conflits pour " + c);
+            assertTrue(others.containsAll(expected), "Mêmes conflits pour " + c);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package agenda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste le cache des événements par jour
+ */
+public class DayCacheTest {
+    // November 1st, 2020
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    // November 1st, 2020, 22:30
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+
+    // 120 minutes
+    Duration min_120 = Duration.ofMinutes(120);
+
+    Agenda agenda;
+    Event weekly;
+
+    @BeforeEach
+    void setUp() {
+        agenda = new Agenda();
+        agenda.setDayCacheSize(30);
+        weekly = new Event("Weekly", nov_1_2020_22_30, min_120);
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        agenda.addEvent(weekly);
+        // Remplit le cache avec les 14 premiers jours
+        for (int i = 0; i < 14; i++)
+            agenda.eventsInDay(nov_1_2020.plusDays(i));
+    }
+
+    @Test
+    public void repeatedQueriesHitTheCache() {
+        List<Event> first = agenda.eventsInDay(nov_1_2020.plusWeeks(1));
+        assertSame(first, agenda.eventsInDay(nov_1_2020.plusWeeks(1)), "Le même résultat est rendu");
+        assertThrows(UnsupportedOperationException.class, () -> first.add(weekly), "Le résultat est immuable");
+        assertEquals(new Agenda.DayCacheStats(2, 14, 0, 14), agenda.getDayCacheStats());
+        agenda.setDayCacheSize(0);
+        assertNull(agenda.getDayCacheStats());
+        assertThrows(IllegalArgumentException.class, () -> agenda.setDayCacheSize(-1));
+    }
+
+    @Test
+    public void onlyAffectedDaysAreInvalidated() {
+        agenda.addEvent(new Event("Simple", nov_1_2020_22_30.plusDays(3), min_120));
+        assertEquals(2, agenda.getDayCacheStats().invalidations(), "Le jour de l'événement et son lendemain");
+        weekly.addException(nov_1_2020.plusWeeks(1));
+        assertEquals(3, agenda.getDayCacheStats().invalidations(), "Le jour de l'exception");
+        assertTrue(agenda.eventsInDay(nov_1_2020.plusWeeks(1)).isEmpty());
+        weekly.setTermination(1);
+        assertEquals(4, agenda.getDayCacheStats().invalidations(), "Les jours de la répétition, hors exceptions");
+        assertEquals(14 - 4 + 1, agenda.getDayCacheStats().size(), "Les autres jours restent en cache");
+    }
+
+    @Test
+    public void batchesInvalidateOnlyTheirDays() {
+        agenda.addAll(List.of(new Event("First", nov_1_2020_22_30.plusDays(3), min_120),
+                new Event("Second", nov_1_2020_22_30.plusDays(9), Duration.ofMinutes(30))));
+        assertEquals(3, agenda.getDayCacheStats().invalidations(), "Les jours des deux événements");
+        List<Event> large = new ArrayList<>();
+        for (int i = 0; i < 31; i++)
+            large.add(new Event("Large " + i, nov_1_2020_22_30.plusYears(1), min_120));
+        agenda.addAll(large);
+        assertEquals(0, agenda.getDayCacheStats().size(), "Un lot plus grand que le cache le vide");
+    }
+
+    @Test
+    public void cachedResultsFollowEveryChange() {
+        // Un second agenda, sans cache, partage les mêmes événements
+        Agenda reference = new Agenda();
+        reference.addEvent(weekly);
+        agenda.setDayCacheSize(10);
+        Random random = new Random(42);
+        ChronoUnit[] frequencies = { ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS };
+        List<Event> events = new ArrayList<>(List.of(weekly));
+        for (int step = 0; step < 500; step++) {
+            Event e = events.get(random.nextInt(events.size()));
+            LocalDate day = nov_1_2020.plusDays(random.nextInt(40));
+            switch (random.nextInt(8)) {
+                case 0, 1 -> {
+                    Event added = new Event("Event " + step, day.atTime(random.nextInt(24), 0),
+                            Duration.ofHours(1 + random.nextInt(30)));
+                    agenda.addEvent(added);
+                    reference.addEvent(added);
+                    events.add(added);
+                }
+                case 2 -> {
+                    if (events.size() > 1 && agenda.removeEvent(e)) {
+                        reference.removeEvent(e);
+                        events.remove(e);
+                    }
+                }
+                case 3 -> e.setRepetition(frequencies[random.nextInt(frequencies.length)]);
+                case 4 -> {
+                    if (e.hasRepetition())
+                        e.addException(day);
+                }
+                case 5 -> {
+                    if (e.hasRepetition())
+                        e.removeException(day);
+                }
+                case 6 -> {
+                    if (e.hasRepetition())
+                        e.setTermination(random.nextBoolean() ? day : LocalDate.of(2021, 1, 1));
+                }
+                default -> agenda.updateEvent(e, e.getTitle(), day.atTime(random.nextInt(24), 0), min_120);
+            }
+            for (int i = 0; i < 12; i++) {
+                LocalDate queried = nov_1_2020.plusDays(random.nextInt(40));
+                // L'ordre des événements répétitifs entre eux n'est pas garanti
+                List<Event> expected = reference.eventsInDay(queried);
+                List<Event> actual = agenda.eventsInDay(queried);
+                assertEquals(expected.size(), actual.size());
+                assertEquals(new HashSet<>(expected), new HashSet<>(actual),
+                        "Le cache doit suivre les changements, étape " + step + ", le " + queried);
+            }
+        }
+        assertTrue(agenda.getDayCacheStats().hits() > 0);
+    }
+}
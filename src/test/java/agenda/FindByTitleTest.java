@@ -0,0 +1,89 @@
+package agenda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste la recherche des événements par titre
+ */
+public class FindByTitleTest {
+    // November 1st, 2020, 22:30
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+
+    // 120 minutes
+    Duration min_120 = Duration.ofMinutes(120);
+
+    Agenda agenda;
+
+    Event standup;
+
+    Event standupReview;
+
+    Event upperStandup;
+
+    Event lunch;
+
+    @BeforeEach
+    void setUp() {
+        standup = new Event("Standup", nov_1_2020_22_30, min_120);
+        standupReview = new Event("Standup review", nov_1_2020_22_30, min_120);
+        upperStandup = new Event("STANDUP", nov_1_2020_22_30, min_120);
+        lunch = new Event("Lunch", nov_1_2020_22_30, min_120);
+        agenda = new Agenda();
+        agenda.addEvent(standup);
+        agenda.addEvent(standupReview);
+        agenda.addEvent(upperStandup);
+        agenda.addEvent(lunch);
+    }
+
+    @Test
+    public void exactMatch() {
+        assertEquals(List.of(standup), agenda.findByTitle("Standup"), "Seul le titre identique est trouvé");
+        assertEquals(List.of(standup), agenda.findByTitle("Standup", TitleMatch.EXACT), "Idem avec EXACT");
+    }
+
+    @Test
+    public void ignoreCase() {
+        assertEquals(List.of(standup, upperStandup), agenda.findByTitle("standup", TitleMatch.IGNORE_CASE),
+                "La casse est ignorée");
+    }
+
+    @Test
+    public void prefix() {
+        assertEquals(List.of(standup, standupReview), agenda.findByTitle("Stand", TitleMatch.PREFIX),
+                "Les titres qui commencent par Stand");
+        assertTrue(agenda.findByTitle("stand", TitleMatch.PREFIX).isEmpty(), "Le préfixe respecte la casse");
+    }
+
+    @Test
+    public void prefixIgnoreCase() {
+        List<Event> found = agenda.findByTitle("sTaNd", TitleMatch.PREFIX_IGNORE_CASE);
+        assertEquals(3, found.size(), "3 titres commencent par stand, quelle que soit la casse");
+        assertFalse(found.contains(lunch), "Lunch ne commence pas par stand");
+        assertEquals(4, agenda.findByTitle("", TitleMatch.PREFIX_IGNORE_CASE).size(),
+                "Le préfixe vide trouve tout");
+    }
+
+    @Test
+    public void resultIsACopy() {
+        agenda.findByTitle("Standup").clear();
+        assertEquals(1, agenda.findByTitle("Standup").size(), "Le résultat ne modifie pas l'index");
+    }
+
+    @Test
+    public void removeFromIndex() {
+        TitleIndex index = new TitleIndex();
+        index.add(standup);
+        index.add(upperStandup);
+        index.remove(standup);
+        assertTrue(index.find("Standup", TitleMatch.EXACT).isEmpty(), "L'événement est retiré");
+        assertEquals(List.of(upperStandup), index.find("standup", TitleMatch.IGNORE_CASE),
+                "L'autre événement reste");
+    }
+}
@@ -0,0 +1,119 @@
+package agenda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste la recherche des créneaux libres
+ */
+public class FreeSlotTest {
+    // November 1st, 2020
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    // 120 minutes
+    Duration min_120 = Duration.ofMinutes(120);
+
+    Agenda agenda;
+
+    @BeforeEach
+    void setUp() {
+        agenda = new Agenda();
+    }
+
+    private LocalDateTime at(int day, int hour) {
+        return nov_1_2020.plusDays(day).atTime(hour, 0);
+    }
+
+    @Test
+    public void emptyAgendaIsFreeAllTheWindow() {
+        assertEquals(List.of(new TimeSlot(at(0, 8), at(0, 18))),
+                agenda.findFreeSlots(Duration.ofMinutes(30), at(0, 8), at(0, 18)));
+    }
+
+    @Test
+    public void overlappingEventsAreMerged() {
+        agenda.addEvent(new Event("A", at(0, 9), min_120));
+        agenda.addEvent(new Event("B", at(0, 10), min_120));
+        agenda.addEvent(new Event("C", at(0, 11), Duration.ofMinutes(30)));
+        agenda.addEvent(new Event("D", at(0, 14), min_120));
+        assertEquals(List.of(new TimeSlot(at(0, 8), at(0, 9)), new TimeSlot(at(0, 12), at(0, 14)),
+                new TimeSlot(at(0, 16), at(0, 18))), agenda.findFreeSlots(Duration.ofMinutes(30), at(0, 8), at(0, 18)));
+        assertEquals(List.of(new TimeSlot(at(0, 12), at(0, 14)), new TimeSlot(at(0, 16), at(0, 18))),
+                agenda.findFreeSlots(min_120, at(0, 8), at(0, 18)), "Les créneaux trop courts sont écartés");
+    }
+
+    @Test
+    public void repeatingEventsAreExpanded() {
+        Event standup = new Event("Standup", at(0, 9), Duration.ofMinutes(15));
+        standup.setRepetition(ChronoUnit.DAYS);
+        standup.addException(nov_1_2020.plusDays(1));
+        agenda.addEvent(standup);
+        // Commencée la veille, elle déborde sur le matin
+        Event night = new Event("Night", at(-7, 22), Duration.ofHours(10));
+        night.setRepetition(ChronoUnit.WEEKS);
+        agenda.addEvent(night);
+        assertEquals(List.of(new TimeSlot(at(0, 0), at(0, 9)), new TimeSlot(at(0, 9).plusMinutes(15), at(0, 22)),
+                        new TimeSlot(at(1, 8), at(2, 9)), new TimeSlot(at(2, 9).plusMinutes(15), at(2, 12))),
+                agenda.findFreeSlots(Duration.ofMinutes(30), at(0, 0), at(2, 12)));
+        assertEquals(List.of(new TimeSlot(at(1, 8), at(2, 9)), new TimeSlot(at(2, 9).plusMinutes(15), at(2, 12))),
+                agenda.findFreeSlots(Duration.ofMinutes(30), at(1, 0), at(2, 12)),
+                "L'occurrence de la veille occupe le début de la fenêtre");
+    }
+
+    @Test
+    public void severalAgendasMustAllBeFree() {
+        Agenda other = new Agenda();
+        agenda.addEvent(new Event("A", at(0, 9), min_120));
+        other.addEvent(new Event("B", at(0, 12), min_120));
+        Event lunch = new Event("Lunch", at(0, 15), Duration.ofMinutes(30));
+        lunch.setRepetition(ChronoUnit.DAYS);
+        other.addEvent(lunch);
+        assertEquals(List.of(new TimeSlot(at(0, 8), at(0, 9)), new TimeSlot(at(0, 11), at(0, 12)),
+                        new TimeSlot(at(0, 14), at(0, 15)), new TimeSlot(at(0, 15).plusMinutes(30), at(0, 18))),
+                Agenda.findFreeSlots(List.of(agenda, other), Duration.ofMinutes(30), at(0, 8), at(0, 18)));
+    }
+
+    @Test
+    public void freeSlotsMatchIsFreeFor() {
+        Random random = new Random(42);
+        ChronoUnit[] frequencies = { ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS };
+        for (int i = 0; i < 60; i++) {
+            LocalDateTime start = at(random.nextInt(20), random.nextInt(24)).plusMinutes(15 * random.nextInt(4));
+            Event e = new Event("Event " + i, start, Duration.ofMinutes(15 + 15 * random.nextInt(40)));
+            if (random.nextInt(4) == 0)
+                e.setRepetition(frequencies[random.nextInt(frequencies.length)]);
+            agenda.addEvent(e);
+        }
+        LocalDateTime from = at(5, 0);
+        LocalDateTime to = at(25, 0);
+        Duration minute = Duration.ofMinutes(1);
+        List<TimeSlot> slots = agenda.findFreeSlots(Duration.ofMinutes(15), from, to);
+        assertFalse(slots.isEmpty());
+        for (TimeSlot slot : slots) {
+            // Les bornes touchent les événements voisins : le créneau réduit d'une minute est libre
+            Event inside = new Event("Slot", slot.start().plus(minute), slot.duration().minus(minute.multipliedBy(2)));
+            assertTrue(agenda.isFreeFor(inside), "Le créneau " + slot + " doit être libre");
+            if (slot.start().isAfter(from))
+                assertFalse(agenda.isFreeFor(new Event("Before", slot.start().minus(minute.multipliedBy(2)), minute)),
+                        "Le créneau " + slot + " ne peut pas commencer plus tôt");
+            if (slot.end().isBefore(to))
+                assertFalse(agenda.isFreeFor(new Event("After", slot.end().plus(minute), minute)),
+                        "Le créneau " + slot + " ne peut pas finir plus tard");
+        }
+    }
+
+    @Test
+    public void invalidWindowsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> agenda.findFreeSlots(min_120, at(1, 0), at(0, 0)));
+        assertThrows(IllegalArgumentException.class, () -> agenda.findFreeSlots(min_120.negated(), at(0, 0), at(1, 0)));
+    }
+}
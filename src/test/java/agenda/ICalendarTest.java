@@ -0,0 +1,249 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste la lecture et l'écriture d'événements au format iCalendar
+ */
+public class ICalendarTest {
+    // November 1st, 2020
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    // November 1st, 2020, 22:30
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+
+    // 120 minutes
+    Duration min_120 = Duration.ofMinutes(120);
+
+    @TempDir
+    Path dir;
+
+    private static List<Event> parse(String text) throws IOException {
+        List<Event> res = new ArrayList<>();
+        ICalendar.read(new StringReader(text), res::add);
+        return res;
+    }
+
+    @Test
+    public void testReadsRecurrenceRules() throws IOException {
+        List<Event> events = parse("""
+                BEGIN:VCALENDAR\r
+                VERSION:2.0\r
+                BEGIN:VEVENT\r
+                UID:1\r
+                SUMMARY:Weekly meeting\\, room 4\r
+                DTSTART;TZID=Europe/Paris:20201101T223000\r
+                DTEND;TZID=Europe/Paris:20201102T003000\r
+                RRULE:FREQ=WEEKLY;COUNT=5\r
+                EXDATE;TZID=Europe/Paris:20201108T223000,20201115T223000\r
+                BEGIN:VALARM\r
+                TRIGGER:-PT15M\r
+                DESCRIPTION:Not the summary\r
+                END:VALARM\r
+                END:VEVENT\r
+                BEGIN:VEVENT\r
+                SUMMARY:Daily\r
+                DTSTART:20201101T080000Z\r
+                DURATION:PT1H\r
+                RRULE:FREQ=DAILY;UNTIL=20201110T235959Z\r
+                END:VEVENT\r
+                END:VCALENDAR\r
+                """);
+        assertEquals(2, events.size());
+        Event weekly = events.get(0);
+        assertEquals("Weekly meeting, room 4", weekly.getTitle(), "Le texte doit être déséchappé");
+        assertEquals(nov_1_2020_22_30, weekly.getStart());
+        assertEquals(min_120, weekly.getDuration(), "La durée vient de DTEND");
+        assertEquals(ChronoUnit.WEEKS, weekly.getFrequency());
+        assertEquals(5, weekly.getNumberOfOccurrences());
+        assertFalse(weekly.isInDay(nov_1_2020.plusWeeks(1)), "EXDATE est une exception");
+        assertFalse(weekly.isInDay(nov_1_2020.plusWeeks(2)), "EXDATE est une exception");
+        assertTrue(weekly.isInDay(nov_1_2020.plusWeeks(3)));
+
+        Event daily = events.get(1);
+        assertEquals(ChronoUnit.DAYS, daily.getFrequency());
+        assertEquals(LocalDate.of(2020, 11, 10), daily.getTerminationDate());
+        assertTrue(daily.isInDay(LocalDate.of(2020, 11, 10)));
+        assertFalse(daily.isInDay(LocalDate.of(2020, 11, 11)));
+    }
+
+    @Test
+    public void testUnfoldsLongLines() throws IOException {
+        List<Event> events = parse("""
+                BEGIN:VEVENT
+                SUMMARY:A very long
+                  title
+                DTSTART;VALUE=DATE:20201101
+                END:VEVENT
+                """);
+        assertEquals("A very long title", events.get(0).getTitle());
+        assertEquals(Duration.ofDays(1), events.get(0).getDuration(), "Un événement sur une date dure un jour");
+    }
+
+    @Test
+    public void testRejectsUnsupportedRule() {
+        assertThrows(IOException.class, () -> parse("""
+                BEGIN:VEVENT
+                DTSTART:20201101T223000
+                RRULE:FREQ=WEEKLY;BYDAY=MO,WE
+                END:VEVENT
+                """), "Une règle qu'un événement ne peut pas représenter doit être refusée");
+    }
+
+    @Test
+    public void testRejectsYearlyRule() {
+        assertThrows(IOException.class, () -> parse("""
+                BEGIN:VEVENT
+                DTSTART:20201101T223000
+                RRULE:FREQ=YEARLY
+                END:VEVENT
+                """), "Seules les répétitions quotidiennes, hebdomadaires et mensuelles sont lues");
+        Event yearly = new Event("Yearly", nov_1_2020_22_30, min_120);
+        yearly.setRepetition(ChronoUnit.YEARS);
+        assertThrows(IOException.class, () -> ICalendar.write(List.of(yearly), new StringWriter()));
+    }
+
+    @Test
+    public void testFailedImportLeavesTheAgendaUnchanged() {
+        StringBuilder text = new StringBuilder("BEGIN:VCALENDAR\r\n");
+        // Plus d'événements valides qu'un lot, avant la règle refusée
+        for (int i = 0; i < 5_000; i++)
+            text.append("BEGIN:VEVENT\r\nSUMMARY:Event ").append(i)
+                    .append("\r\nDTSTART:20201101T223000\r\nDURATION:PT1H\r\nEND:VEVENT\r\n");
+        text.append("BEGIN:VEVENT\r\nDTSTART:20201101T223000\r\nRRULE:FREQ=WEEKLY;INTERVAL=2\r\nEND:VEVENT\r\n");
+        text.append("END:VCALENDAR\r\n");
+        Agenda agenda = new Agenda();
+        Event existing = new Event("Existing", nov_1_2020_22_30, min_120);
+        agenda.addEvent(existing);
+        assertThrows(IOException.class, () -> ICalendar.read(new StringReader(text.toString()), agenda));
+        assertEquals(List.of(existing), agenda.getEvents(), "Un import refusé n'ajoute aucun événement");
+        assertEquals(List.of(existing), agenda.eventsInDay(nov_1_2020));
+    }
+
+    @Test
+    public void testWritesSignedDurations() throws IOException {
+        Event negative = new Event("Negative", nov_1_2020_22_30, Duration.ofMinutes(-90));
+        StringWriter text = new StringWriter();
+        ICalendar.write(List.of(negative), text);
+        assertTrue(text.toString().contains("\r\nDURATION:-PT1H30M\r\n"), "Le signe précède le P");
+        assertEquals(Duration.ofMinutes(-90), parse(text.toString()).get(0).getDuration());
+        Event fraction = new Event("Fraction", nov_1_2020_22_30, Duration.ofMillis(1_500));
+        assertThrows(IOException.class, () -> ICalendar.write(List.of(fraction), new StringWriter()),
+                "Une fraction de seconde ne peut pas être écrite");
+        Event start = new Event("Start", nov_1_2020_22_30.plusNanos(1), min_120);
+        assertThrows(IOException.class, () -> ICalendar.write(List.of(start), new StringWriter()));
+    }
+
+    @Test
+    public void testRejectedEventIsNotStarted() {
+        Event simple = new Event("Simple", nov_1_2020_22_30, min_120);
+        Event fraction = new Event("Fraction", nov_1_2020_22_30, Duration.ofMillis(1_500));
+        Event start = new Event("Start", nov_1_2020_22_30.plusNanos(1), min_120);
+        Event yearly = new Event("Yearly", nov_1_2020_22_30, min_120);
+        yearly.setRepetition(ChronoUnit.YEARS);
+        for (Event rejected : List.of(fraction, start, yearly)) {
+            StringWriter text = new StringWriter();
+            assertThrows(IOException.class, () -> ICalendar.write(List.of(simple, rejected), text),
+                    "L'événement " + rejected.getTitle() + " ne peut pas être écrit");
+            String written = text.toString();
+            assertTrue(written.endsWith("\r\nEND:VEVENT\r\n"), "Le texte s'arrête après l'événement précédent");
+            assertEquals(1, written.split("BEGIN:VEVENT", -1).length - 1, "L'événement refusé n'est pas entamé");
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Event simple = new Event("Simple; with separators, and\nlines", nov_1_2020_22_30, min_120);
+        Event monthly = new Event("Monthly", nov_1_2020_22_30, min_120);
+        monthly.setRepetition(ChronoUnit.MONTHS);
+        monthly.addException(nov_1_2020.plusMonths(2));
+        monthly.setTermination(LocalDate.of(2021, 6, 1));
+        Event daily = new Event("Daily " + "é".repeat(60), nov_1_2020_22_30, min_120);
+        daily.setRepetition(ChronoUnit.DAYS);
+        daily.setTermination(10);
+
+        StringWriter text = new StringWriter();
+        ICalendar.write(List.of(simple, monthly, daily), text);
+        for (String line : text.toString().split("\r\n"))
+            assertTrue(line.getBytes(StandardCharsets.UTF_8).length <= 75,
+                    "Les lignes doivent être repliées à 75 octets");
+
+        Agenda read = new Agenda();
+        assertEquals(3, ICalendar.read(new StringReader(text.toString()), read));
+        List<Event> events = read.getEvents();
+        assertEquals(simple.getTitle(), events.get(0).getTitle());
+        assertEquals(simple.getStart(), events.get(0).getStart());
+        assertEquals(simple.getDuration(), events.get(0).getDuration());
+        assertFalse(events.get(0).hasRepetition());
+        assertEquals(ChronoUnit.MONTHS, events.get(1).getFrequency());
+        assertEquals(LocalDate.of(2021, 6, 1), events.get(1).getTerminationDate());
+        assertFalse(events.get(1).isInDay(nov_1_2020.plusMonths(2)), "L'exception doit être conservée");
+        assertEquals(daily.getTitle(), events.get(2).getTitle());
+        assertEquals(10, events.get(2).getNumberOfOccurrences());
+        assertEquals(List.of(events.get(2)), read.eventsInDay(nov_1_2020.plusDays(5)),
+                "Les événements lus doivent être indexés");
+    }
+
+    @Test
+    public void testStreamsLargeInput() throws IOException {
+        int count = 10_000;
+        // Un flux généré à la demande : il n'est jamais entièrement en mémoire
+        Reader generated = new Reader() {
+            private int event = -1;
+            private String chunk = "BEGIN:VCALENDAR\r\n";
+            private int position;
+
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                if (position == chunk.length()) {
+                    if (++event > count)
+                        return -1;
+                    chunk = event == count ? "END:VCALENDAR\r\n"
+                            : "BEGIN:VEVENT\r\nSUMMARY:Event " + event + "\r\nDTSTART:20201101T"
+                            + String.format("%02d", event % 24) + "0000\r\nDURATION:PT1H\r\nEND:VEVENT\r\n";
+                    position = 0;
+                }
+                int n = Math.min(length, chunk.length() - position);
+                chunk.getChars(position, position + n, buffer, offset);
+                position += n;
+                return n;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Agenda agenda = new Agenda();
+        assertEquals(count, ICalendar.read(generated, agenda));
+        assertEquals(count, agenda.getEvents().size());
+        assertEquals("Event 9999", agenda.getEvents().get(count - 1).getTitle());
+        assertEquals(count, agenda.eventsInDay(nov_1_2020).size());
+    }
+
+    @Test
+    public void testFileRoundTrip() throws IOException {
+        Agenda agenda = new Agenda();
+        agenda.addEvent(new Event("Simple event", nov_1_2020_22_30, min_120));
+        Path file = dir.resolve("agenda.ics");
+        ICalendar.write(agenda, file);
+        Agenda read = new Agenda();
+        assertEquals(1, ICalendar.read(file, read));
+        assertEquals("Simple event", read.getEvents().get(0).getTitle());
+    }
+}
@@ -0,0 +1,97 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste le parcours des occurrences d'un événement
+ */
+public class OccurrencesTest {
+    // November 1st, 2020
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    // November 1st, 2020, 22:30
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+
+    // 120 minutes
+    Duration min_120 = Duration.ofMinutes(120);
+
+    private static List<LocalDateTime> starts(Stream<Occurrence> occurrences) {
+        return occurrences.map(Occurrence::start).toList();
+    }
+
+    @Test
+    public void simpleEventHasOneOccurrence() {
+        Event simple = new Event("Simple event", nov_1_2020_22_30, min_120);
+        assertEquals(List.of(nov_1_2020_22_30), starts(simple.occurrences()));
+        assertEquals(nov_1_2020_22_30, simple.nextOccurrenceOnOrAfter(nov_1_2020.plusDays(1)).start(),
+                "L'événement déborde sur le lendemain");
+        assertNull(simple.nextOccurrenceOnOrAfter(nov_1_2020.plusDays(2)), "Plus d'occurrence ensuite");
+    }
+
+    @Test
+    public void occurrencesHonourTerminationAndExceptions() {
+        Event weekly = new Event("Weekly", nov_1_2020_22_30, min_120);
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        weekly.addException(nov_1_2020.plusWeeks(1));
+        weekly.setTermination(4);
+        assertEquals(List.of(nov_1_2020_22_30, nov_1_2020_22_30.plusWeeks(2), nov_1_2020_22_30.plusWeeks(3)),
+                starts(weekly.occurrences()), "4 occurrences dont une exception");
+    }
+
+    @Test
+    public void occurrencesWithoutTerminationAreInfinite() {
+        Event daily = new Event("Daily", nov_1_2020_22_30, min_120);
+        daily.setRepetition(ChronoUnit.DAYS);
+        assertEquals(1000, daily.occurrences().limit(1000).count());
+        Occurrence last = daily.occurrences().skip(999).findFirst().orElseThrow();
+        assertEquals(nov_1_2020_22_30.plusDays(999), last.start());
+        assertEquals(nov_1_2020_22_30.plusDays(999).plus(min_120), last.end());
+    }
+
+    @Test
+    public void nextOccurrenceSkipsAhead() {
+        Event monthly = new Event("Monthly", LocalDateTime.of(2021, 1, 31, 10, 0), Duration.ofHours(1));
+        monthly.setRepetition(ChronoUnit.MONTHS);
+        monthly.addException(LocalDate.of(2521, 3, 31));
+        // Cinq siècles plus tard, sans parcourir les occurrences précédentes
+        Occurrence next = monthly.nextOccurrenceOnOrAfter(LocalDate.of(2521, 2, 1));
+        assertEquals(LocalDateTime.of(2521, 5, 31, 10, 0), next.start(),
+                "Pas de 31 février ni d'avril, et le 31 mars est une exception");
+        assertSame(monthly, next.event());
+        assertEquals(LocalDateTime.of(2021, 1, 31, 10, 0), monthly.nextOccurrenceOnOrAfter(nov_1_2020).start(),
+                "Avant le début, la première occurrence");
+    }
+
+    @Test
+    public void nextOccurrenceAfterTermination() {
+        Event daily = new Event("Daily", nov_1_2020_22_30, min_120);
+        daily.setRepetition(ChronoUnit.DAYS);
+        daily.setTermination(nov_1_2020.plusDays(9));
+        assertEquals(nov_1_2020_22_30.plusDays(9), daily.nextOccurrenceOnOrAfter(nov_1_2020.plusDays(9)).start());
+        assertNull(daily.nextOccurrenceOnOrAfter(nov_1_2020.plusDays(10)), "Après la terminaison");
+    }
+
+    @Test
+    public void occurrencesBetweenMatchIsInDay() {
+        Event weekly = new Event("Weekly", nov_1_2020_22_30, min_120);
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        weekly.addException(nov_1_2020.plusWeeks(5));
+        LocalDate from = nov_1_2020.plusDays(17);
+        LocalDate to = nov_1_2020.plusDays(60);
+        List<LocalDateTime> expected = from.datesUntil(to.plusDays(1))
+                .filter(weekly::isInDay)
+                .map(d -> d.atTime(22, 30))
+                .toList();
+        assertEquals(expected, starts(weekly.occurrencesBetween(from, to)));
+        assertThrows(IllegalArgumentException.class, () -> weekly.occurrencesBetween(to, from));
+    }
+}
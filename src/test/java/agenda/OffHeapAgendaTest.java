@@ -0,0 +1,123 @@
+package agenda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste le stockage des événements hors du tas
+ */
+public class OffHeapAgendaTest {
+    // November 1st, 2020
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    // November 1st, 2020, 22:30
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+
+    // 120 minutes
+    Duration min_120 = Duration.ofMinutes(120);
+
+    static final ChronoUnit[] FREQUENCIES = { ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS, ChronoUnit.YEARS };
+
+    List<Event> events;
+    OffHeapAgenda offHeap;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(42);
+        events = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            LocalDateTime start = nov_1_2020.plusDays(random.nextInt(90)).atTime(random.nextInt(24), 15 * random.nextInt(4));
+            Event e = new Event(random.nextInt(4) == 0 ? null : "Event " + random.nextInt(50), start,
+                    Duration.ofMinutes(30 + random.nextInt(3000)));
+            if (random.nextBoolean()) {
+                ChronoUnit frequency = FREQUENCIES[random.nextInt(FREQUENCIES.length)];
+                e.setRepetition(frequency);
+                for (int k = random.nextInt(600); k > 0; k -= 100)
+                    e.addException(start.toLocalDate().plus(random.nextInt(20), frequency));
+                if (random.nextBoolean())
+                    e.setTermination(start.toLocalDate().plusDays(random.nextInt(200)));
+                else if (random.nextBoolean())
+                    e.setTermination(1 + random.nextInt(10));
+            }
+            events.add(e);
+        }
+        offHeap = new OffHeapAgenda();
+        offHeap.addAll(events);
+    }
+
+    @Test
+    public void answersLikeAnIndexedAgenda() {
+        EventStore indexed = new Agenda();
+        indexed.addAll(events);
+        EventStore compact = offHeap;
+        assertEquals(events.size(), compact.getEvents().size());
+        for (LocalDate day = nov_1_2020; day.isBefore(nov_1_2020.plusDays(120)); day = day.plusDays(1))
+            // L'ordre des événements d'un jour diffère : comparés triés
+            assertEquals(describe(indexed.eventsInDay(day)).stream().sorted().toList(),
+                    describe(compact.eventsInDay(day)).stream().sorted().toList(), "Le " + day);
+        for (String title : new String[] { "Event 7", "Event 49", null, "Missing" })
+            assertEquals(describe(indexed.findByTitle(title)), describe(compact.findByTitle(title)),
+                    "Les événements de titre " + title + ", dans l'ordre d'ajout");
+    }
+
+    private static List<String> describe(List<Event> events) {
+        return events.stream().map(e -> e.getTitle() + " " + e.getStart()).toList();
+    }
+
+    @Test
+    public void cursorMatchesEvents() {
+        OffHeapAgenda.Cursor cursor = offHeap.cursor();
+        for (int i = 0; i < events.size(); i++) {
+            Event e = events.get(i);
+            cursor.moveTo(i);
+            assertEquals(e.getTitle(), cursor.getTitle());
+            assertEquals(e.getStart(), cursor.getStart());
+            assertEquals(e.getDuration(), cursor.getDuration());
+            assertEquals(e.getFrequency(), cursor.getFrequency());
+            assertEquals(e.getTerminationDate(), cursor.getTerminationDate());
+            for (LocalDate day = nov_1_2020.minusDays(3); day.isBefore(nov_1_2020.plusDays(400)); day = day.plusDays(1))
+                assertEquals(e.isInDay(day), cursor.isInDay(day), "Même réponse que isInDay pour " + e + " le " + day);
+        }
+    }
+
+    @Test
+    public void eventsAreRebuiltOnTheHeap() {
+        for (int i = 0; i < events.size(); i++) {
+            Event e = events.get(i);
+            Event copy = offHeap.event(i);
+            assertEquals(e.toString(), copy.toString());
+            assertEquals(e.getTerminationDate(), copy.getTerminationDate());
+            for (LocalDate day = nov_1_2020; day.isBefore(nov_1_2020.plusDays(100)); day = day.plusDays(1))
+                assertEquals(e.isInDay(day), copy.isInDay(day), "Les exceptions sont conservées");
+        }
+        LocalDate day = nov_1_2020.plusDays(45);
+        assertEquals(events.stream().filter(e -> e.isInDay(day)).map(Event::toString).toList(),
+                offHeap.eventsInDay(day).stream().map(Event::toString).toList());
+    }
+
+    @Test
+    public void recordsSpanSeveralChunks() {
+        OffHeapAgenda agenda = new OffHeapAgenda();
+        int count = 70_000;
+        for (int i = 0; i < count; i++)
+            agenda.addEvent(new Event("Event " + (i % 10), nov_1_2020_22_30.plusMinutes(i), min_120));
+        assertEquals(count, agenda.size());
+        OffHeapAgenda.Cursor cursor = agenda.cursor().moveTo(count - 1);
+        assertEquals(nov_1_2020_22_30.plusMinutes(count - 1), cursor.getStart(), "Le dernier bloc est lu");
+        assertEquals("Event 9", cursor.getTitle());
+        int[] inDay = new int[1];
+        agenda.forEachInDay(nov_1_2020, c -> inDay[0]++);
+        assertEquals(90, inDay[0], "De 22h30 à 23h59 le premier jour");
+        assertThrows(IndexOutOfBoundsException.class, () -> agenda.cursor().moveTo(count));
+    }
+}
@@ -0,0 +1,119 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste le calcul des terminaisons et du nombre réel d'occurrences
+ */
+public class PeriodsTest {
+    // November 1st, 2020
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    static final ChronoUnit[] FREQUENCIES = { ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS, ChronoUnit.YEARS };
+
+    @Test
+    public void closedFormsMatchTheCalendar() {
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            LocalDate from = LocalDate.ofEpochDay(random.nextInt(400_000) - 200_000);
+            LocalDate to = from.plusDays(random.nextInt(4_000) - 1_000);
+            long periods = random.nextInt(2_000) - 500;
+            for (ChronoUnit frequency : FREQUENCIES) {
+                assertEquals(from.plus(periods, frequency), Periods.plus(from, periods, frequency),
+                        from + " + " + periods + " " + frequency);
+                assertEquals(frequency.between(from, to), Periods.between(from, to, frequency),
+                        frequency + " entre " + from + " et " + to);
+            }
+        }
+        LocalDate jan_31_2020 = LocalDate.of(2020, 1, 31);
+        assertEquals(LocalDate.of(2020, 2, 29), Periods.plus(jan_31_2020, 1, ChronoUnit.MONTHS), "Fin de mois bissextile");
+        assertEquals(0, Periods.between(jan_31_2020, LocalDate.of(2020, 2, 29), ChronoUnit.MONTHS));
+    }
+
+    @Test
+    public void monthsWithDayMatchTheCalendar() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2_000; i++) {
+            LocalDate anchor = LocalDate.of(random.nextInt(3_000) - 500, 1 + random.nextInt(12), 28).plusDays(random.nextInt(4));
+            long periods = random.nextInt(12 * 500);
+            long expected = 0;
+            for (long k = 0; k < periods; k++)
+                if (anchor.plusMonths(k).getDayOfMonth() == anchor.getDayOfMonth())
+                    expected++;
+            assertEquals(expected, Periods.monthsWithDayOf(anchor, periods), anchor + ", " + periods + " mois");
+        }
+    }
+
+    @Test
+    public void effectiveOccurrencesSubtractExceptions() {
+        Random random = new Random(42);
+        for (int i = 0; i < 400; i++) {
+            LocalDate start = nov_1_2020.plusDays(random.nextInt(120));
+            ChronoUnit frequency = FREQUENCIES[random.nextInt(FREQUENCIES.length)];
+            Event e = new Event("Event", start.atTime(10, 0), Duration.ofHours(1));
+            e.setRepetition(frequency);
+            assertEquals(Long.MAX_VALUE, e.getEffectiveNumberOfOccurrences(), "Sans fin");
+            if (random.nextBoolean())
+                e.setTermination(1 + random.nextInt(60));
+            else
+                e.setTermination(start.plusDays(random.nextInt(2_000) - 10));
+            // Des exceptions sur des occurrences, hors occurrences, et après la fin
+            for (int k = random.nextInt(8); k > 0; k--)
+                e.addException(start.plus(random.nextInt(80), frequency));
+            e.addException(start.plusDays(1));
+            long expected = e.occurrences().count();
+            assertEquals(expected, e.getEffectiveNumberOfOccurrences(),
+                    "Nombre réel d'occurrences de " + e + " " + frequency + " jusqu'au " + e.getTerminationDate());
+        }
+        Event simple = new Event("Simple", nov_1_2020.atStartOfDay(), Duration.ofHours(1));
+        assertEquals(1, simple.getEffectiveNumberOfOccurrences());
+    }
+
+    @Test
+    public void shortMonthsAreNotCounted() {
+        Event monthly = new Event("Monthly", LocalDate.of(2021, 1, 31).atTime(10, 0), Duration.ofHours(1));
+        monthly.setRepetition(ChronoUnit.MONTHS);
+        monthly.setTermination(12);
+        assertEquals(12, monthly.getNumberOfOccurrences(), "12 périodes");
+        assertEquals(7, monthly.getEffectiveNumberOfOccurrences(), "Seuls 7 mois ont un 31");
+        monthly.addException(LocalDate.of(2021, 3, 31));
+        monthly.addException(LocalDate.of(2022, 3, 31));
+        assertEquals(6, monthly.getEffectiveNumberOfOccurrences(), "L'exception après la fin ne compte pas");
+    }
+
+    @Test
+    public void terminationBeforeStartHasNoOccurrence() {
+        for (ChronoUnit frequency : List.of(ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS)) {
+            Event e = new Event("Event", nov_1_2020.atTime(10, 0), Duration.ofHours(1));
+            e.setRepetition(frequency);
+            e.setTermination(nov_1_2020.minusDays(3));
+            assertEquals(0, e.occurrences().count(), "Aucune occurrence " + frequency);
+            assertEquals(0, e.getNumberOfOccurrences(), "Aucune période " + frequency);
+            assertEquals(0, e.getEffectiveNumberOfOccurrences(), "Aucune occurrence comptée " + frequency);
+        }
+    }
+
+    @Test
+    public void exceptionsFollowTheTermination() {
+        Event weekly = new Event("Weekly", nov_1_2020.atTime(10, 0), Duration.ofHours(1));
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        weekly.addException(nov_1_2020.plusWeeks(2));
+        weekly.addException(nov_1_2020.plusWeeks(8));
+        weekly.setTermination(5);
+        assertEquals(4, weekly.getEffectiveNumberOfOccurrences(), "L'exception après la fin ne compte pas");
+        weekly.setTermination(10);
+        assertEquals(8, weekly.getEffectiveNumberOfOccurrences(), "Les deux exceptions comptent");
+        weekly.removeException(nov_1_2020.plusWeeks(8));
+        weekly.setTermination(nov_1_2020.plusWeeks(1));
+        weekly.addException(nov_1_2020.plusWeeks(8));
+        assertEquals(2, weekly.getEffectiveNumberOfOccurrences(), "Seules les exceptions avant la fin comptent");
+    }
+}
@@ -0,0 +1,82 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste le partage des règles de répétition
+ */
+public class RecurrenceRuleTest {
+    // November 1st, 2020
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    // November 1st, 2020, 22:30
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+
+    // 120 minutes
+    Duration min_120 = Duration.ofMinutes(120);
+
+    @Test
+    public void equalRulesAreShared() {
+        assertSame(RecurrenceRule.of(ChronoUnit.WEEKS, 10), RecurrenceRule.of(ChronoUnit.WEEKS, 10));
+        assertSame(RecurrenceRule.of(ChronoUnit.DAYS), RecurrenceRule.of(ChronoUnit.DAYS));
+        assertSame(RecurrenceRule.of(ChronoUnit.MONTHS, nov_1_2020), RecurrenceRule.of(ChronoUnit.MONTHS, LocalDate.of(2020, 11, 1)));
+        assertNotEquals(RecurrenceRule.of(ChronoUnit.WEEKS, 10), RecurrenceRule.of(ChronoUnit.DAYS, 10));
+        assertNotEquals(RecurrenceRule.of(ChronoUnit.WEEKS, 0), RecurrenceRule.of(ChronoUnit.WEEKS),
+                "Zéro occurrence n'est pas une répétition sans fin");
+    }
+
+    @Test
+    public void eventsStartingOnDifferentDaysShareTheirRule() {
+        Event first = new Event("First", nov_1_2020_22_30, min_120);
+        Event second = new Event("Second", nov_1_2020_22_30.plusDays(3), min_120);
+        for (Event e : new Event[] { first, second }) {
+            e.setRepetition(ChronoUnit.WEEKS);
+            e.setTermination(10);
+        }
+        assertSame(first.getRecurrenceRule(), second.getRecurrenceRule(), "Une seule règle pour les deux événements");
+        assertEquals(nov_1_2020.plusWeeks(9), first.getTerminationDate());
+        assertEquals(nov_1_2020.plusDays(3).plusWeeks(9), second.getTerminationDate(),
+                "La date de fin dépend du début de chaque événement");
+        first.addException(nov_1_2020.plusWeeks(1));
+        assertTrue(second.isInDay(nov_1_2020.plusDays(3).plusWeeks(1)), "Les exceptions restent propres à l'événement");
+        assertNull(new Event("Simple", nov_1_2020_22_30, min_120).getRecurrenceRule());
+    }
+
+    @Test
+    public void terminationsAreBuiltFromTheRule() {
+        for (ChronoUnit frequency : new ChronoUnit[] { ChronoUnit.DAYS, ChronoUnit.WEEKS, ChronoUnit.MONTHS }) {
+            for (long count = 1; count < 40; count += 7) {
+                Event e = new Event("Counted", nov_1_2020_22_30, min_120);
+                e.setRepetition(frequency);
+                e.setTermination(count);
+                Termination expected = new Termination(nov_1_2020, frequency, count);
+                assertEquals(expected.terminationDateInclusive(), e.getTerminationDate());
+                assertEquals(expected.numberOfOccurrences(), e.getNumberOfOccurrences());
+                LocalDate until = nov_1_2020.plusDays(count * 5);
+                e.setTermination(until);
+                expected = new Termination(nov_1_2020, frequency, until);
+                assertEquals(until, e.getTerminationDate());
+                assertEquals(expected.numberOfOccurrences(), e.getNumberOfOccurrences(),
+                        "Même nombre d'occurrences que la terminaison, " + frequency + " jusqu'au " + until);
+            }
+        }
+    }
+
+    @Test
+    public void repetitionWithoutAnchorKeepsItsTermination() {
+        Repetition daily = new Repetition(ChronoUnit.DAYS);
+        Termination termination = new Termination(nov_1_2020, ChronoUnit.DAYS, 5);
+        daily.setTermination(termination);
+        assertSame(termination, daily.getTermination(), "Sans début, la terminaison donnée est gardée");
+        assertEquals(0, daily.getNumberOfExceptions(), "Aucune exception");
+        assertFalse(daily.isException(nov_1_2020));
+        assertFalse(daily.removeException(nov_1_2020));
+    }
+}
@@ -0,0 +1,194 @@
+package agenda;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste le déclenchement des rappels au début des occurrences
+ */
+public class ReminderSchedulerTest {
+    // November 1st, 2020
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    // November 1st, 2020, 22:30
+    LocalDateTime nov_1_2020_22_30 = LocalDateTime.of(2020, 11, 1, 22, 30);
+
+    // 120 minutes
+    Duration min_120 = Duration.ofMinutes(120);
+
+    /**
+     * Une horloge avancée à la main
+     */
+    static final class TestClock extends Clock {
+        LocalDateTime now;
+
+        TestClock(LocalDateTime now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now.toInstant(ZoneOffset.UTC);
+        }
+    }
+
+    TestClock clock;
+    Agenda agenda;
+    Queue<Occurrence> fired;
+    Queue<Boolean> virtual;
+
+    @BeforeEach
+    void setUp() {
+        clock = new TestClock(nov_1_2020.atStartOfDay());
+        agenda = new Agenda();
+        fired = new ConcurrentLinkedQueue<>();
+        virtual = new ConcurrentLinkedQueue<>();
+    }
+
+    private ReminderScheduler scheduler() {
+        return new ReminderScheduler(agenda, clock, o -> {
+            virtual.add(Thread.currentThread().isVirtual());
+            fired.add(o);
+        });
+    }
+
+    private List<LocalDateTime> firedStarts() {
+        List<LocalDateTime> res = new ArrayList<>(fired.stream().map(Occurrence::start).toList());
+        res.sort(Comparator.naturalOrder());
+        return res;
+    }
+
+    @Test
+    public void remindsEachOccurrence() {
+        Event daily = new Event("Daily", nov_1_2020_22_30, min_120);
+        daily.setRepetition(ChronoUnit.DAYS);
+        daily.setTermination(3);
+        agenda.addEvent(daily);
+        Event simple = new Event("Simple", nov_1_2020.atTime(10, 0), min_120);
+        agenda.addEvent(simple);
+        try (ReminderScheduler scheduler = scheduler()) {
+            assertEquals(nov_1_2020.atTime(10, 0), scheduler.nextDue());
+            clock.now = nov_1_2020.atTime(9, 59);
+            assertEquals(0, scheduler.tick(), "Rien n'a encore commencé");
+            clock.now = nov_1_2020.atTime(10, 0);
+            assertEquals(1, scheduler.tick());
+            assertEquals(nov_1_2020_22_30, scheduler.nextDue());
+            clock.now = nov_1_2020_22_30.plusDays(5);
+            assertEquals(3, scheduler.tick(), "Les 3 occurrences de l'événement quotidien");
+            assertNull(scheduler.nextDue(), "Plus rien à rappeler");
+        }
+        assertEquals(List.of(nov_1_2020.atTime(10, 0), nov_1_2020_22_30, nov_1_2020_22_30.plusDays(1),
+                nov_1_2020_22_30.plusDays(2)), firedStarts());
+        assertTrue(virtual.stream().allMatch(v -> v), "Les rappels s'exécutent sur des threads virtuels");
+    }
+
+    @Test
+    public void pastOccurrencesAreNotReminded() {
+        Event weekly = new Event("Weekly", nov_1_2020_22_30.minusWeeks(520), min_120);
+        weekly.setRepetition(ChronoUnit.WEEKS);
+        agenda.addEvent(weekly);
+        try (ReminderScheduler scheduler = scheduler()) {
+            assertEquals(nov_1_2020_22_30, scheduler.nextDue(), "La prochaine occurrence, sans rattrapage");
+        }
+    }
+
+    @Test
+    public void followsChangesOfTheAgenda() {
+        try (ReminderScheduler scheduler = scheduler()) {
+            Event weekly = new Event("Weekly", nov_1_2020_22_30, min_120);
+            agenda.addEvent(weekly);
+            assertEquals(nov_1_2020_22_30, scheduler.nextDue(), "Un événement ajouté est programmé");
+            weekly.setRepetition(ChronoUnit.WEEKS);
+            weekly.addException(nov_1_2020);
+            assertEquals(nov_1_2020_22_30.plusWeeks(1), scheduler.nextDue(), "L'exception est prise en compte");
+            clock.now = nov_1_2020_22_30.plusWeeks(1);
+            assertEquals(1, scheduler.tick());
+            weekly.addException(nov_1_2020.plusWeeks(2));
+            assertEquals(nov_1_2020_22_30.plusWeeks(3), scheduler.nextDue());
+            weekly.removeException(nov_1_2020.plusWeeks(2));
+            assertEquals(nov_1_2020_22_30.plusWeeks(2), scheduler.nextDue(), "L'exception retirée est rappelée");
+            weekly.setTermination(nov_1_2020.plusWeeks(1));
+            assertNull(scheduler.nextDue(), "La terminaison est prise en compte");
+        }
+        assertEquals(List.of(nov_1_2020_22_30.plusWeeks(1)), firedStarts(), "Un seul rappel");
+    }
+
+    @Test
+    public void closedSchedulerIgnoresTheAgenda() {
+        ReminderScheduler scheduler = scheduler();
+        scheduler.close();
+        agenda.addEvent(new Event("Simple", nov_1_2020_22_30, min_120));
+        clock.now = nov_1_2020_22_30;
+        assertNull(scheduler.nextDue(), "Le planificateur ne suit plus l'agenda");
+    }
+
+    @Test
+    public void removedAndUpdatedEventsAreRescheduled() {
+        Event removed = new Event("Removed", nov_1_2020_22_30, min_120);
+        Event moved = new Event("Moved", nov_1_2020_22_30, min_120);
+        agenda.addEvent(removed);
+        agenda.addEvent(moved);
+        try (ReminderScheduler scheduler = scheduler()) {
+            agenda.removeEvent(removed);
+            agenda.updateEvent(moved, "Moved", nov_1_2020_22_30.plusHours(1), min_120);
+            assertEquals(nov_1_2020_22_30.plusHours(1), scheduler.nextDue(), "L'événement retiré n'est plus rappelé");
+            clock.now = nov_1_2020_22_30.plusHours(2);
+            assertEquals(1, scheduler.tick());
+            agenda.addEvent(new Event("Cleared", nov_1_2020_22_30.plusDays(1), min_120));
+            agenda.clear();
+            assertNull(scheduler.nextDue(), "Un agenda vidé n'a plus de rappel");
+        }
+        assertEquals(List.of(nov_1_2020_22_30.plusHours(1)), firedStarts());
+    }
+
+    @Test
+    public void reAddedEventsAreRemindedOnce() {
+        Event e = new Event("Event", nov_1_2020_22_30, min_120);
+        agenda.addEvent(e);
+        try (ReminderScheduler scheduler = scheduler()) {
+            agenda.removeEvent(e);
+            agenda.addEvent(e);
+            clock.now = nov_1_2020_22_30;
+            assertEquals(1, scheduler.tick(), "L'entrée du premier ajout est obsolète");
+            agenda.clear();
+            agenda.addEvent(e);
+            agenda.updateEvent(e, "Event", nov_1_2020_22_30.plusDays(1), min_120);
+            clock.now = nov_1_2020_22_30.plusDays(1);
+            assertEquals(1, scheduler.tick());
+        }
+        assertEquals(List.of(nov_1_2020_22_30, nov_1_2020_22_30.plusDays(1)), firedStarts());
+    }
+
+    @Test
+    public void updatesDoNotGrowTheHeap() {
+        Event e = new Event("Event", nov_1_2020_22_30, min_120);
+        agenda.addEvent(e);
+        try (ReminderScheduler scheduler = scheduler()) {
+            for (int i = 0; i < 10_000; i++)
+                agenda.updateEvent(e, "Event " + i, nov_1_2020_22_30.plusMinutes(i % 60), min_120);
+            assertTrue(scheduler.heapSize() <= 2 + 16, "Les entrées obsolètes sont retirées : " + scheduler.heapSize());
+            clock.now = nov_1_2020_22_30.plusHours(1);
+            assertEquals(1, scheduler.tick(), "Seule la dernière version est rappelée");
+        }
+    }
+}
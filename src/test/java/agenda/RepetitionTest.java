@@ -0,0 +1,92 @@
+package agenda;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Teste le stockage des exceptions d'une répétition
+ */
+public class RepetitionTest {
+    // November 1st, 2020
+    LocalDate nov_1_2020 = LocalDate.of(2020, 11, 1);
+
+    @Test
+    public void exceptionOnAnOccurrence() {
+        Repetition weekly = new Repetition(ChronoUnit.WEEKS, nov_1_2020);
+        weekly.addException(nov_1_2020.plusWeeks(3));
+        assertTrue(weekly.isException(nov_1_2020.plusWeeks(3)), "W+3 est une exception");
+        assertTrue(weekly.isExceptionAt(3), "L'occurrence d'index 3 est une exception");
+        assertFalse(weekly.isException(nov_1_2020.plusWeeks(2)), "W+2 n'est pas une exception");
+    }
+
+    @Test
+    public void exceptionOutsideOccurrences() {
+        Repetition weekly = new Repetition(ChronoUnit.WEEKS, nov_1_2020);
+        weekly.addException(nov_1_2020.plusDays(3));
+        weekly.addException(nov_1_2020.minusWeeks(1));
+        assertTrue(weekly.isException(nov_1_2020.plusDays(3)), "Une date hors occurrence est conservée");
+        assertTrue(weekly.isException(nov_1_2020.minusWeeks(1)), "Une date avant le début est conservée");
+        assertEquals(2, weekly.getNumberOfExceptions(), "2 exceptions");
+    }
+
+    @Test
+    public void exceptionWithoutAnchor() {
+        Repetition daily = new Repetition(ChronoUnit.DAYS);
+        daily.addException(nov_1_2020);
+        assertTrue(daily.isException(nov_1_2020), "Sans début connu, l'exception est conservée");
+        assertTrue(daily.removeException(nov_1_2020), "L'exception est retirée");
+        assertFalse(daily.isException(nov_1_2020), "Plus d'exception");
+    }
+
+    @Test
+    public void duplicateExceptionsAreStoredOnce() {
+        Repetition daily = new Repetition(ChronoUnit.DAYS, nov_1_2020);
+        daily.addException(nov_1_2020.plusDays(5));
+        daily.addException(nov_1_2020.plusDays(5));
+        assertEquals(1, daily.getNumberOfExceptions(), "Une exception ajoutée 2 fois n'est comptée qu'une fois");
+        assertTrue(daily.removeException(nov_1_2020.plusDays(5)), "L'exception est retirée");
+        assertFalse(daily.removeException(nov_1_2020.plusDays(5)), "Elle n'est plus là");
+    }
+
+    @Test
+    public void bulkExceptions() {
+        Repetition monthly = new Repetition(ChronoUnit.MONTHS, nov_1_2020);
+        List<LocalDate> dates = List.of(nov_1_2020.plusMonths(1), nov_1_2020.plusMonths(2), nov_1_2020.plusDays(2));
+        monthly.addExceptions(dates);
+        assertEquals(3, monthly.getNumberOfExceptions(), "3 exceptions ajoutées");
+        monthly.removeExceptions(dates.subList(0, 2));
+        assertEquals(1, monthly.getNumberOfExceptions(), "Il reste 1 exception");
+        assertTrue(monthly.isException(nov_1_2020.plusDays(2)), "La dernière exception est conservée");
+    }
+
+    @Test
+    public void occurrenceIndexOfMonthlyRepetition() {
+        LocalDate jan_31_2021 = LocalDate.of(2021, 1, 31);
+        Repetition monthly = new Repetition(ChronoUnit.MONTHS, jan_31_2021);
+        assertEquals(14, monthly.occurrenceIndex(LocalDate.of(2022, 3, 31)),
+                "Le 31 mars 2022 est la 15ème occurrence");
+        assertEquals(-1, monthly.occurrenceIndex(LocalDate.of(2021, 2, 28)),
+                "Pas d'occurrence le 28 février");
+        assertEquals(-1, monthly.occurrenceIndex(jan_31_2021.minusMonths(1)),
+                "Pas d'occurrence avant le début");
+        assertEquals(-1, new Repetition(ChronoUnit.MONTHS).occurrenceIndex(jan_31_2021),
+                "Pas d'occurrence connue sans début");
+    }
+
+    @Test
+    public void eventBulkExceptions() {
+        Event daily = new Event("Daily", nov_1_2020.atTime(10, 0), Duration.ofHours(1));
+        daily.setRepetition(ChronoUnit.DAYS);
+        daily.addExceptions(List.of(nov_1_2020.plusDays(1), nov_1_2020.plusDays(2)));
+        assertFalse(daily.isInDay(nov_1_2020.plusDays(2)), "J+2 est une exception");
+        daily.removeExceptions(List.of(nov_1_2020.plusDays(2)));
+        assertTrue(daily.isInDay(nov_1_2020.plusDays(2)), "J+2 n'est plus une exception");
+        assertTrue(daily.removeException(nov_1_2020.plusDays(1)), "J+1 était une exception");
+    }
+}